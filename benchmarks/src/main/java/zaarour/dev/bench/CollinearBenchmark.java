@@ -0,0 +1,77 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w3_collinear.FastCollinearPoints;
+import zaarour.dev.w3_collinear.Point;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of {@link FastCollinearPoints} on {@code n} distinct points.
+ * <p>
+ * A quarter of the points lie on horizontal, vertical and diagonal lines of {@value #RUN}
+ * points each, the rest are scattered at random over a 32768-by-32768 grid, so both the
+ * slope sorts and the segment collection are exercised. The points are generated from a
+ * fixed seed and are the same for every run.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollinearBenchmark {
+
+    private static final int GRID = 32768;
+    private static final int RUN = 5;
+
+    @Param({"256", "1024"})
+    private int n;
+
+    private Point[] points;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(42L);
+        Set<Long> seen = new HashSet<>();
+        points = new Point[n];
+        int count = 0;
+        int[][] steps = {{1, 0}, {0, 1}, {1, 1}};
+        while (count < n / 4) {
+            int[] step = steps[random.nextInt(steps.length)];
+            int x = random.nextInt(GRID - RUN);
+            int y = random.nextInt(GRID - RUN);
+            for (int k = 0; k < RUN && count < n / 4; k++) {
+                count = add(x + k * step[0], y + k * step[1], seen, count);
+            }
+        }
+        while (count < n) {
+            count = add(random.nextInt(GRID), random.nextInt(GRID), seen, count);
+        }
+    }
+
+    private int add(int x, int y, Set<Long> seen, int count) {
+        if (!seen.add(((long) x << 32) | y)) return count;
+        points[count] = new Point(x, y);
+        return count + 1;
+    }
+
+    @Benchmark
+    public int construct() {
+        return new FastCollinearPoints(points).numberOfSegments();
+    }
+}
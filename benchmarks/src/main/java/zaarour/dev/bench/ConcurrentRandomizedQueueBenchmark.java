@@ -0,0 +1,67 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w2_queues.ConcurrentRandomizedQueue;
+import zaarour.dev.w2_queues.RandomizedQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures an enqueue followed by a dequeue on a randomized queue shared by all benchmark
+ * threads: a {@link ConcurrentRandomizedQueue} against a {@link RandomizedQueue} guarded by
+ * {@code synchronized}, which also funnels every thread through the shared generator of
+ * {@code StdRandom}.
+ * <p>
+ * Both queues start with {@value #SIZE} items. Run with {@code -t 1}, {@code -t 2}, ... to
+ * see how throughput scales with the number of threads; the default is one thread per core.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ConcurrentRandomizedQueueBenchmark {
+
+    private static final int SIZE = 65536;
+    private static final Integer ITEM = 1;
+
+    private ConcurrentRandomizedQueue<Integer> concurrent;
+    private RandomizedQueue<Integer> locked;
+
+    @Setup
+    public void fill() {
+        concurrent = new ConcurrentRandomizedQueue<>();
+        locked = new RandomizedQueue<>();
+        for (int i = 0; i < SIZE; i++) {
+            concurrent.enqueue(ITEM);
+            locked.enqueue(ITEM);
+        }
+    }
+
+    @Benchmark
+    public Integer concurrent() {
+        concurrent.enqueue(ITEM);
+        return concurrent.dequeue();
+    }
+
+    @Benchmark
+    public Integer synchronizedQueue() {
+        synchronized (locked) {
+            locked.enqueue(ITEM);
+            return locked.dequeue();
+        }
+    }
+}
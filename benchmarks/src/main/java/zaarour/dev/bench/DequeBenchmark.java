@@ -0,0 +1,96 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w2_queues.CircularDeque;
+import zaarour.dev.w2_queues.Deque;
+import zaarour.dev.w2_queues.IntDeque;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Deque#addFirst(Object)} paired with {@link Deque#removeLast()} on a deque
+ * that holds {@code size} items, so the deque stays the same size while every node cycles
+ * through it, and the same on a {@link CircularDeque} and an {@link IntDeque}.
+ * <p>
+ * Each invocation performs {@value #BATCH} add/remove pairs; the reported time and, with
+ * {@code -prof gc}, the allocation are per pair.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DequeBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"16", "65536"})
+    private int size;
+
+    private Deque<Integer> deque;
+    private CircularDeque<Integer> circular;
+    private IntDeque ints;
+    private Integer[] items;
+
+    @Setup
+    public void fill() {
+        items = new Integer[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            items[i] = i;
+        }
+        deque = new Deque<>();
+        circular = new CircularDeque<>();
+        ints = new IntDeque();
+        for (int i = 0; i < size; i++) {
+            deque.addLast(items[i % BATCH]);
+            circular.addLast(items[i % BATCH]);
+            ints.addLast(i % BATCH);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int addFirstRemoveLast() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            deque.addFirst(items[i]);
+            sum += deque.removeLast();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int circularAddFirstRemoveLast() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            circular.addFirst(items[i]);
+            sum += circular.removeLast();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int intAddFirstRemoveLast() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            ints.addFirst(i);
+            sum += ints.removeLast();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,82 @@
+package zaarour.dev.bench;
+
+import edu.princeton.cs.algs4.StdRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w1_percolation.Percolation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows that {@link Percolation#open(int)} allocates nothing: run with {@code -prof gc}, the
+ * {@code gc.alloc.rate.norm} of {@code openAll} should be about 0 bytes per site.
+ * <p>
+ * Each iteration is a single invocation that opens all {@value #ORDER} * {@value #ORDER} sites
+ * of a blocked grid in random order. The grids of all {@value #ITERATIONS} warmup and
+ * measurement iterations are built in the trial-level setup, before the first iteration, so
+ * nothing but {@code open()} runs while allocation is counted. The time per site is that of a
+ * grid filled from empty, cold caches included.
+ * </p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(1)
+public class PercolationAllocationBenchmark {
+
+    private static final int ORDER = 512;
+    private static final int ITERATIONS = 3 + 5;
+
+    /**
+     * One blocked grid per warmup and measurement iteration, all built before the first one.
+     */
+    @State(Scope.Thread)
+    public static class Grids {
+        private int[] order;
+        private Percolation[] grids;
+        private int next;
+        private Percolation grid;
+
+        @Setup(Level.Trial)
+        public void build() {
+            order = StdRandom.permutation(ORDER * ORDER);
+            grids = new Percolation[ITERATIONS];
+            for (int i = 0; i < grids.length; i++) {
+                grids[i] = new Percolation(ORDER);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void take() {
+            // more iterations than planned (-wi, -i) build their grid here, which then shows up
+            // in the allocation of that iteration
+            grid = next < grids.length ? grids[next] : new Percolation(ORDER);
+            if (next < grids.length) {
+                grids[next] = null;
+            }
+            next++;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDER * ORDER)
+    public int openAll(Grids state) {
+        Percolation grid = state.grid;
+        int[] order = state.order;
+        for (int site : order) {
+            grid.open(site);
+        }
+        return grid.numberOfOpenSites();
+    }
+}
@@ -0,0 +1,71 @@
+package zaarour.dev.bench;
+
+import edu.princeton.cs.algs4.StdRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w1_percolation.Percolation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Percolation#open(int)} on a blocked grid, in random site order.
+ * <p>
+ * {@code open} opens {@value #BATCH} sites per invocation, walking through a random permutation
+ * of the n-by-n sites. When the permutation is used up, the invocation-level setup builds a
+ * fresh grid outside the measured region, so every measured call opens a blocked site. With
+ * {@code -prof gc}, its allocation per operation is the grid built once per n*n opens, a few
+ * bytes per site; {@link PercolationAllocationBenchmark} measures {@code open()} alone.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PercolationBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"512", "4096"})
+    private int n;
+
+    private int[] order;
+    private Percolation percolation;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void permute() {
+        order = StdRandom.permutation(n * n);
+        percolation = new Percolation(n);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        // n * n is a multiple of BATCH, so a batch never runs past the permutation
+        if (cursor == order.length) {
+            percolation = new Percolation(n);
+            cursor = 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int open() {
+        for (int i = 0; i < BATCH; i++) {
+            percolation.open(order[cursor++]);
+        }
+        return percolation.numberOfOpenSites();
+    }
+}
@@ -0,0 +1,60 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w2_queues.RandomizedQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RandomizedQueue#dequeue()} on a queue that holds {@code size} items.
+ * <p>
+ * Every dequeued item is enqueued again, so the queue never shrinks or grows and no resize
+ * happens in the measured region; each invocation performs {@value #BATCH} such pairs.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomizedQueueBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"16", "65536"})
+    private int size;
+
+    private RandomizedQueue<Integer> queue;
+
+    @Setup
+    public void fill() {
+        queue = new RandomizedQueue<>();
+        for (int i = 0; i < size; i++) {
+            queue.enqueue(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int dequeue() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            Integer item = queue.dequeue();
+            sum += item;
+            queue.enqueue(item);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,84 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w2_queues.RandomizedQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the latency of single {@link RandomizedQueue#enqueue(Object)} calls while a queue
+ * grows from empty to {@value #LIMIT} items, then starts over, against {@link ArrayList#add}.
+ * <p>
+ * Most calls take a few nanoseconds; the ones that resize show up in the high percentiles. An
+ * {@code ArrayList} copies all of its items when it grows, so its worst case grows with the
+ * size, while the segmented queue copies at most one segment. {@code burst} enqueues and
+ * dequeues a batch around a steady size, where the shrink policy decides whether the queue
+ * keeps resizing.
+ * </p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomizedQueueResizeBenchmark {
+
+    private static final int LIMIT = 1 << 22;
+    private static final int BURST = 4096;
+    private static final Integer ITEM = 1;
+
+    private RandomizedQueue<Integer> queue;
+    private ArrayList<Integer> list;
+    private RandomizedQueue<Integer> steady;
+
+    @Setup
+    public void create() {
+        queue = new RandomizedQueue<>();
+        list = new ArrayList<>();
+        steady = new RandomizedQueue<>();
+        for (int i = 0; i < BURST; i++) {
+            steady.enqueue(ITEM);
+        }
+    }
+
+    @Benchmark
+    public int enqueue() {
+        if (queue.size() == LIMIT) {
+            queue = new RandomizedQueue<>();
+        }
+        queue.enqueue(ITEM);
+        return queue.size();
+    }
+
+    @Benchmark
+    public int arrayListAdd() {
+        if (list.size() == LIMIT) {
+            list = new ArrayList<>();
+        }
+        list.add(ITEM);
+        return list.size();
+    }
+
+    @Benchmark
+    public int burst() {
+        for (int i = 0; i < BURST; i++) {
+            steady.enqueue(ITEM);
+        }
+        int sum = 0;
+        for (int i = 0; i < BURST; i++) {
+            sum += steady.dequeue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w4_8puzzle.Board;
+import zaarour.dev.w4_8puzzle.Solver;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Solver} on fixed puzzles of increasing difficulty.
+ * <p>
+ * The puzzles are named after their size and the length of their shortest solution, like the
+ * {@code puzzle3x3-NN.txt} files of the assignment.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+
+    private static final Map<String, int[][]> PUZZLES = Map.of(
+            "3x3-04", new int[][]{{0, 1, 3}, {4, 2, 5}, {7, 8, 6}},
+            "3x3-20", new int[][]{{1, 6, 4}, {7, 0, 8}, {2, 3, 5}},
+            "4x4-15", new int[][]{{5, 1, 7, 3}, {9, 2, 11, 4}, {13, 6, 15, 8}, {0, 10, 14, 12}}
+    );
+
+    @Param({"3x3-04", "3x3-20", "4x4-15"})
+    private String puzzle;
+
+    private Board board;
+
+    @Setup
+    public void load() {
+        board = new Board(PUZZLES.get(puzzle));
+    }
+
+    @Benchmark
+    public int solve() {
+        return new Solver(board).moves();
+    }
+}
@@ -0,0 +1,83 @@
+package zaarour.dev.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zaarour.dev.w2_queues.Deque;
+import zaarour.dev.w2_queues.WorkStealingDeque;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a work queue shared by one owner and three thieves: the owner pushes an item, and
+ * pops one back whenever more than {@value #BACKLOG} are waiting, while the thieves keep taking
+ * from the front. The same traffic runs on a {@link WorkStealingDeque} and on a {@link Deque}
+ * guarded by {@code synchronized}, the way it was shared before.
+ * <p>
+ * Results are throughput per thread role; compare the {@code owner} and {@code thief} rows of
+ * the two groups. They are only meaningful on a machine with at least four cores.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class WorkStealingDequeBenchmark {
+
+    private static final Integer ITEM = 1;
+    private static final int BACKLOG = 1024;
+
+    private WorkStealingDeque<Integer> workStealing;
+    private Deque<Integer> locked;
+
+    @Setup
+    public void create() {
+        workStealing = new WorkStealingDeque<>();
+        locked = new Deque<>();
+    }
+
+    @Benchmark
+    @Group("workStealing")
+    @GroupThreads(1)
+    public Integer owner() {
+        workStealing.addLast(ITEM);
+        return workStealing.size() > BACKLOG ? workStealing.removeLast() : null;
+    }
+
+    @Benchmark
+    @Group("workStealing")
+    @GroupThreads(3)
+    public Integer thief() {
+        return workStealing.removeFirst();
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public Integer lockedOwner() {
+        synchronized (locked) {
+            locked.addLast(ITEM);
+            return locked.size() > BACKLOG ? locked.removeLast() : null;
+        }
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(3)
+    public Integer lockedThief() {
+        synchronized (locked) {
+            return locked.isEmpty() ? null : locked.removeFirst();
+        }
+    }
+}
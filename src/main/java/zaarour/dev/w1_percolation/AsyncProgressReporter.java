@@ -0,0 +1,96 @@
+package zaarour.dev.w1_percolation;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link ProgressListener} that prints the latest progress from a background thread at a
+ * fixed rate.
+ * <p>
+ * Reporting a trial only publishes an immutable snapshot, so the experiment never waits on the
+ * console. Snapshots that arrive between two ticks are coalesced into the most recent one, and
+ * {@link #close()} prints the final snapshot if it has not been printed yet.
+ * </p>
+ */
+public final class AsyncProgressReporter implements ProgressListener, AutoCloseable {
+
+    private final PrintStream out;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    private Snapshot printed;       // only touched under the lock of this reporter
+
+    /**
+     * Creates a reporter that prints to standard output at most once a second.
+     */
+    public AsyncProgressReporter() {
+        this(System.out, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a reporter that prints to the given stream at most once per period.
+     *
+     * @param out    the stream to print to
+     * @param period the time between two lines
+     * @param unit   the unit of period
+     * @throws IllegalArgumentException if out or unit is null, or period is not positive
+     */
+    public AsyncProgressReporter(PrintStream out, long period, TimeUnit unit) {
+        if (out == null || unit == null) {
+            throw new IllegalArgumentException("out and unit cannot be null");
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("period should be greater than 0");
+        }
+        this.out = out;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "percolation-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(this::flush, period, period, unit);
+    }
+
+    @Override
+    public void trialCompleted(int trial, int maxTrials, double threshold, double mean, double halfWidth) {
+        latest.set(new Snapshot(trial, maxTrials, threshold, mean, halfWidth));
+    }
+
+    /**
+     * Stops the background thread and prints the last snapshot if it is still pending.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private synchronized void flush() {
+        Snapshot snapshot = latest.get();
+        if (snapshot == null || snapshot == printed) {
+            return;
+        }
+        printed = snapshot;
+        out.printf(
+                "Trial %3d/%-3d completed. Percolation Threshold (p*): %.5f, Mean: %.5f +/- %.5f\n",
+                snapshot.trial, snapshot.maxTrials, snapshot.threshold, snapshot.mean, snapshot.halfWidth);
+    }
+
+    private static final class Snapshot {
+        private final int trial;
+        private final int maxTrials;
+        private final double threshold;
+        private final double mean;
+        private final double halfWidth;
+
+        private Snapshot(int trial, int maxTrials, double threshold, double mean, double halfWidth) {
+            this.trial = trial;
+            this.maxTrials = maxTrials;
+            this.threshold = threshold;
+            this.mean = mean;
+            this.halfWidth = halfWidth;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package zaarour.dev.w1_percolation;
+
+import static zaarour.dev.w1_percolation.ClusterForest.isSet;
+import static zaarour.dev.w1_percolation.ClusterForest.set;
+
+/**
+ * The BondPercolation class models bond percolation on a lattice: every site is present, and
+ * each bond between two neighboring sites is either open or blocked. The system percolates iff
+ * some cluster of sites joined by open bonds touches both the top and the bottom boundary.
+ * <p>
+ * Bonds are numbered as described on {@link Lattice}; slots with no bond behind them, such as
+ * the right bond of a site in the last column of a non-periodic lattice, cannot be opened.
+ * </p>
+ */
+public class BondPercolation {
+
+    private final Lattice lattice;
+    private final ClusterForest clusters;
+    private final long[] open;      // open[b / 64] bit b set if bond b is open
+    private final int directions;
+    private int openBonds;
+
+    /**
+     * Initializes a BondPercolation object on the given lattice, where all bonds are initially
+     * blocked.
+     *
+     * @param lattice the lattice of sites
+     * @throws IllegalArgumentException if lattice is null or has too many bond slots to index
+     */
+    public BondPercolation(Lattice lattice) {
+        if (lattice == null) {
+            throw new IllegalArgumentException("Lattice cannot be null");
+        }
+        long slots = (long) lattice.sites() * lattice.bondDirections();
+        if (slots > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Lattice has too many bonds: " + slots);
+        }
+        this.lattice = lattice;
+        this.directions = lattice.bondDirections();
+        this.clusters = new ClusterForest(lattice.sites(), false);
+        this.open = new long[(int) ((slots + 63) >>> 6)];
+        for (int site = 0; site < lattice.sites(); site++) {
+            clusters.add(site, lattice.isTop(site), lattice.isBottom(site));
+        }
+    }
+
+    /**
+     * Returns the bonds of a lattice that exist, in increasing order.
+     *
+     * @param lattice the lattice
+     * @return the numbers of every bond slot that has a bond behind it
+     */
+    public static int[] bonds(Lattice lattice) {
+        int directions = lattice.bondDirections();
+        int count = 0;
+        for (int site = 0; site < lattice.sites(); site++) {
+            for (int direction = 0; direction < directions; direction++) {
+                if (lattice.bondTarget(site, direction) >= 0) count++;
+            }
+        }
+        int[] bonds = new int[count];
+        int i = 0;
+        for (int site = 0; site < lattice.sites(); site++) {
+            for (int direction = 0; direction < directions; direction++) {
+                if (lattice.bondTarget(site, direction) >= 0) bonds[i++] = site * directions + direction;
+            }
+        }
+        return bonds;
+    }
+
+    /**
+     * Opens a bond if it is not already open.
+     *
+     * @param bond the number of the bond
+     * @throws IllegalArgumentException if there is no such bond
+     */
+    public void open(int bond) {
+        openBond(bond, target(bond));
+    }
+
+    /**
+     * Opens the bonds {@code bonds[from..to)} in order, stopping as soon as the system
+     * percolates, like {@link Percolation#openUntilPercolates(int[], int, int)}.
+     *
+     * @param bonds the numbers of the bonds to be opened
+     * @param from  the first position in bonds, inclusive
+     * @param to    the last position in bonds, exclusive
+     * @return the number of positions taken from bonds, 0 if the system already percolates
+     * @throws IllegalArgumentException if bonds is null, the range is invalid, or a bond taken
+     *                                  from the range does not exist
+     */
+    public int openUntilPercolates(int[] bonds, int from, int to) {
+        if (bonds == null)
+            throw new IllegalArgumentException("Bonds cannot be null.");
+        if (from < 0 || to > bonds.length || from > to)
+            throw new IllegalArgumentException("Invalid range provided: [" + from + ", " + to + ").");
+        int i = from;
+        while (!clusters.spans() && i < to) {
+            int bond = bonds[i++];
+            openBond(bond, target(bond));
+        }
+        return i - from;
+    }
+
+    /**
+     * Checks if a bond is open.
+     *
+     * @param bond the number of the bond
+     * @return true if the bond is open, false otherwise
+     * @throws IllegalArgumentException if there is no such bond
+     */
+    public boolean isOpen(int bond) {
+        target(bond);
+        return isSet(open, bond);
+    }
+
+    /**
+     * Checks if a site is joined to the top boundary by open bonds.
+     *
+     * @param site the flat index of the site
+     * @return true if the site is full, false otherwise
+     * @throws IllegalArgumentException if site is outside the lattice
+     */
+    public boolean isFull(int site) {
+        if (site < 0 || site >= lattice.sites())
+            throw new IllegalArgumentException("Invalid index provided: " + site + ".");
+        return clusters.touchesTop(site);
+    }
+
+    /**
+     * Returns the number of open bonds.
+     *
+     * @return the number of open bonds
+     */
+    public int numberOfOpenBonds() {
+        return openBonds;
+    }
+
+    /**
+     * Checks if the system percolates.
+     *
+     * @return true if the system percolates, false otherwise
+     */
+    public boolean percolates() {
+        return clusters.spans();
+    }
+
+    private void openBond(int bond, int target) {
+        if (isSet(open, bond)) {
+            return;
+        }
+        set(open, bond);
+        openBonds++;
+        clusters.union(bond / directions, target);
+    }
+
+    // the other end of a bond, validating that the bond exists
+    private int target(int bond) {
+        int target = bond < 0 || bond / directions >= lattice.sites()
+                ? -1
+                : lattice.bondTarget(bond / directions, bond % directions);
+        if (target < 0)
+            throw new IllegalArgumentException("Invalid bond provided: " + bond + ".");
+        return target;
+    }
+
+    // number of unions that merged two clusters, if metrics are enabled
+    long unionCount() {
+        return clusters.unionCount();
+    }
+
+    // number of find operations, if metrics are enabled
+    long findCount() {
+        return clusters.findCount();
+    }
+
+    // total parent links followed by find operations, if metrics are enabled
+    long pathLength() {
+        return clusters.pathLength();
+    }
+}
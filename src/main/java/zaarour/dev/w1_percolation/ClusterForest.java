@@ -0,0 +1,171 @@
+package zaarour.dev.w1_percolation;
+
+import java.util.Arrays;
+
+/**
+ * Weighted quick-union with path compression over the sites of a lattice, where every root
+ * also records whether its cluster touches the top or the bottom boundary.
+ * <p>
+ * A root stores the negated size of its cluster in the parent array, and the boundary flags
+ * are packed into bitsets, for about 4.25 bytes per site. Shared by {@link Percolation} and
+ * {@link BondPercolation}.
+ * </p>
+ * <p>
+ * Only sites that have been {@link #add added} count as clusters. The number of clusters and
+ * the sizes of the largest and of the largest spanning cluster are kept up to date by every
+ * add and union; the number of clusters of each size is kept as well when a histogram is
+ * requested, at 4 more bytes per site.
+ * </p>
+ */
+final class ClusterForest {
+
+    private final int[] parent;     // parent[i] = parent of site i, or -(cluster size) for a root
+    private final long[] top;       // bit set on roots whose cluster touches the top boundary
+    private final long[] bottom;    // bit set on roots whose cluster touches the bottom boundary
+    private final int[] histogram;  // histogram[s] = number of clusters of size s, or null
+    private boolean spans;
+    private int count;              // number of clusters among the added sites
+    private int largest;            // size of the largest cluster
+    private int largestSpanning;    // size of the largest cluster touching both boundaries
+
+    // Hot-path counters, only maintained when PercolationMetrics.ENABLED
+    private long unions;
+    private long finds;
+    private long pathLength;
+
+    ClusterForest(int sites, boolean histogram) {
+        int words = (sites + 63) >>> 6;
+        this.histogram = histogram ? new int[sites + 1] : null;
+        this.parent = new int[sites];
+        this.top = new long[words];
+        this.bottom = new long[words];
+        Arrays.fill(parent, -1);
+    }
+
+    // make every site its own cluster again, touching neither boundary, and forget all adds
+    void clear() {
+        Arrays.fill(parent, -1);
+        Arrays.fill(top, 0L);
+        Arrays.fill(bottom, 0L);
+        if (histogram != null) Arrays.fill(histogram, 0);
+        spans = false;
+        count = 0;
+        largest = 0;
+        largestSpanning = 0;
+    }
+
+    // count a site that is still its own root as a new cluster, flagging the boundaries it touches
+    void add(int site, boolean touchesTop, boolean touchesBottom) {
+        count++;
+        if (histogram != null) histogram[1]++;
+        if (largest == 0) largest = 1;
+        if (touchesTop) set(top, site);
+        if (touchesBottom) set(bottom, site);
+        if (touchesTop && touchesBottom) {
+            spans = true;
+            if (largestSpanning == 0) largestSpanning = 1;
+        }
+    }
+
+    // does some cluster touch both boundaries?
+    boolean spans() {
+        return spans;
+    }
+
+    // number of clusters among the added sites
+    int count() {
+        return count;
+    }
+
+    // size of the largest cluster, 0 if no site was added
+    int largest() {
+        return largest;
+    }
+
+    // size of the largest cluster touching both boundaries, 0 if there is none
+    int largestSpanning() {
+        return largestSpanning;
+    }
+
+    // number of clusters of the given size, or null if no histogram is kept
+    int[] histogram() {
+        return histogram;
+    }
+
+    // does the cluster of site touch the top boundary?
+    boolean touchesTop(int site) {
+        return isSet(top, find(site));
+    }
+
+    int find(int p) {
+        int root = p;
+        while (parent[root] >= 0) {
+            root = parent[root];
+            if (PercolationMetrics.ENABLED) pathLength++;
+        }
+        if (PercolationMetrics.ENABLED) finds++;
+        while (p != root) {
+            int next = parent[p];
+            parent[p] = root;    // path compression
+            p = next;
+        }
+        return root;
+    }
+
+    void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+
+        // make smaller root point to larger one, merging the boundary flags into the new root
+        if (parent[rootP] > parent[rootQ]) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+        }
+        if (histogram != null) {
+            histogram[-parent[rootP]]--;
+            histogram[-parent[rootQ]]--;
+            histogram[-parent[rootP] - parent[rootQ]]++;
+        }
+        parent[rootP] += parent[rootQ];
+        parent[rootQ] = rootP;
+        count--;
+        int size = -parent[rootP];
+        if (size > largest) largest = size;
+        if (PercolationMetrics.ENABLED) unions++;
+        if (isSet(top, rootQ)) set(top, rootP);
+        if (isSet(bottom, rootQ)) set(bottom, rootP);
+        if (isSet(top, rootP) && isSet(bottom, rootP)) {
+            spans = true;
+            if (size > largestSpanning) largestSpanning = size;
+        }
+    }
+
+    // number of unions that merged two clusters, if metrics are enabled
+    long unionCount() {
+        return unions;
+    }
+
+    // number of find operations, if metrics are enabled
+    long findCount() {
+        return finds;
+    }
+
+    // total parent links followed by find operations, if metrics are enabled
+    long pathLength() {
+        return pathLength;
+    }
+
+    static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+}
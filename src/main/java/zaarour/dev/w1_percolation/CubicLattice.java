@@ -0,0 +1,86 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * The n-by-n-by-n simple cubic lattice with six neighbors per site, optionally periodic within
+ * each layer. Site (layer, row, col), all 0-based, has index
+ * {@code (layer * n + row) * n + col}; the top and bottom are the first and last layers.
+ */
+final class CubicLattice extends Lattice {
+
+    /**
+     * The largest side length whose site count still fits in an int.
+     */
+    static final int MAX_ORDER = 1290;
+
+    private final int n;
+    private final int layer;        // sites per layer
+    private final int bottomLayer;
+    private final boolean periodic;
+
+    CubicLattice(int n, boolean periodic) {
+        super(n, 3, MAX_ORDER);
+        this.n = n;
+        this.layer = n * n;
+        this.bottomLayer = sites() - layer;
+        this.periodic = periodic;
+    }
+
+    @Override
+    public int dimensions() {
+        return 3;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 6;
+    }
+
+    @Override
+    public int neighbors(int site, int[] buffer) {
+        int col = site % n;
+        int row = site / n % n;
+        int count = 0;
+        if (site >= layer) buffer[count++] = site - layer;
+        if (site < bottomLayer) buffer[count++] = site + layer;
+        if (row > 0) buffer[count++] = site - n;
+        else if (periodic) buffer[count++] = site + layer - n;
+        if (row < n - 1) buffer[count++] = site + n;
+        else if (periodic) buffer[count++] = site - layer + n;
+        if (col > 0) buffer[count++] = site - 1;
+        else if (periodic) buffer[count++] = site + n - 1;
+        if (col < n - 1) buffer[count++] = site + 1;
+        else if (periodic) buffer[count++] = site - n + 1;
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < layer;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= bottomLayer;
+    }
+
+    @Override
+    public int bondDirections() {
+        return 3;
+    }
+
+    @Override
+    public int bondTarget(int site, int direction) {
+        if (direction == 0) {
+            // next column
+            if (site % n < n - 1) return site + 1;
+            return periodic ? site - n + 1 : -1;
+        }
+        if (direction == 1) {
+            // next row
+            if (site / n % n < n - 1) return site + n;
+            return periodic ? site - layer + n : -1;
+        }
+        // next layer
+        return site < bottomLayer ? site + layer : -1;
+    }
+}
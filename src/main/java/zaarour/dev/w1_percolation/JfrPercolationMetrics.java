@@ -0,0 +1,56 @@
+package zaarour.dev.w1_percolation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Publishes every trial as a {@code zaarour.dev.PercolationTrial} Flight Recorder event.
+ */
+final class JfrPercolationMetrics implements PercolationMetrics {
+
+    @Override
+    public void trialCompleted(int order, int openSites, long unions, long finds, long pathLength, long elapsedNanos) {
+        TrialEvent event = new TrialEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.order = order;
+        event.openSites = openSites;
+        event.unions = unions;
+        event.finds = finds;
+        event.pathLength = pathLength;
+        event.trialTime = elapsedNanos;
+        event.opensPerSecond = elapsedNanos == 0 ? 0.0 : openSites * 1e9 / elapsedNanos;
+        event.commit();
+    }
+
+    @Name("zaarour.dev.PercolationTrial")
+    @Label("Percolation Trial")
+    @Category("Percolation")
+    static final class TrialEvent extends Event {
+        @Label("Grid Order")
+        int order;
+
+        @Label("Open Sites")
+        int openSites;
+
+        @Label("Unions")
+        long unions;
+
+        @Label("Finds")
+        long finds;
+
+        @Label("Path Length")
+        long pathLength;
+
+        @Label("Trial Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long trialTime;
+
+        @Label("Opens Per Second")
+        double opensPerSecond;
+    }
+}
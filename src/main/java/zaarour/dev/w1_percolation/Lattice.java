@@ -0,0 +1,164 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * A finite lattice on which percolation is studied: a set of sites indexed from 0, the
+ * neighbors of each site, and the two opposite boundaries, top and bottom, that a percolating
+ * cluster has to connect.
+ * <p>
+ * Each topology is its own final class that computes neighbors with plain index arithmetic and
+ * writes them into a caller-supplied buffer. A simulation only ever uses one topology, so the
+ * neighbor calls in its hot loop see a single receiver type and get inlined by the JIT, with
+ * no callbacks and no allocation.
+ * </p>
+ * <p>
+ * Undirected edges (the bonds of bond percolation) are numbered {@code site * bondDirections()
+ * + direction}, where each site owns the edges in its "forward" directions; see
+ * {@link #bondTarget(int, int)}.
+ * </p>
+ * <p>
+ * Periodic lattices wrap around in every direction except the top-to-bottom one, so that
+ * spanning from top to bottom stays meaningful.
+ * </p>
+ */
+public abstract class Lattice {
+
+    private final int order;
+    private final int sites;
+
+    Lattice(int order, int dimensions, int maxOrder) {
+        if (order <= 0) {
+            throw new IllegalArgumentException("Grid order must be greater than 0");
+        }
+        if (order > maxOrder) {
+            throw new IllegalArgumentException("Grid order must be at most " + maxOrder);
+        }
+        int count = 1;
+        for (int d = 0; d < dimensions; d++) {
+            count *= order;
+        }
+        this.order = order;
+        this.sites = count;
+    }
+
+    /**
+     * Returns the n-by-n square lattice with four neighbors per site.
+     *
+     * @param n the side length
+     * @return the lattice
+     * @throws IllegalArgumentException if n is not in [1, {@value Percolation#MAX_ORDER}]
+     */
+    public static Lattice square(int n) {
+        return new SquareLattice(n, false);
+    }
+
+    /**
+     * Returns the n-by-n square lattice with four neighbors per site.
+     *
+     * @param n        the side length
+     * @param periodic whether the left and right columns are neighbors
+     * @return the lattice
+     * @throws IllegalArgumentException if n is not in [1, {@value Percolation#MAX_ORDER}]
+     */
+    public static Lattice square(int n, boolean periodic) {
+        return new SquareLattice(n, periodic);
+    }
+
+    /**
+     * Returns the n-by-n square lattice whose sites also neighbor their four diagonal sites.
+     *
+     * @param n        the side length
+     * @param periodic whether the left and right columns are neighbors
+     * @return the lattice
+     * @throws IllegalArgumentException if n is not in [1, {@value Percolation#MAX_ORDER}]
+     */
+    public static Lattice squareWithDiagonals(int n, boolean periodic) {
+        return new MooreLattice(n, periodic);
+    }
+
+    /**
+     * Returns the n-by-n-by-n simple cubic lattice with six neighbors per site. The top and
+     * bottom are the first and last layers.
+     *
+     * @param n        the side length
+     * @param periodic whether the lattice wraps around in the two directions within a layer
+     * @return the lattice
+     * @throws IllegalArgumentException if n is not in [1, {@value CubicLattice#MAX_ORDER}]
+     */
+    public static Lattice cubic(int n, boolean periodic) {
+        return new CubicLattice(n, periodic);
+    }
+
+    /**
+     * Returns the side length of the lattice.
+     *
+     * @return the side length
+     */
+    public final int order() {
+        return order;
+    }
+
+    /**
+     * Returns the number of sites.
+     *
+     * @return the number of sites
+     */
+    public final int sites() {
+        return sites;
+    }
+
+    /**
+     * Returns the number of dimensions; rows and columns only address 2-dimensional lattices.
+     *
+     * @return the number of dimensions
+     */
+    public abstract int dimensions();
+
+    /**
+     * Returns the largest number of neighbors of any site, the buffer size needed by
+     * {@link #neighbors(int, int[])}.
+     *
+     * @return the largest degree
+     */
+    public abstract int maxDegree();
+
+    /**
+     * Writes the neighbors of a site into buffer.
+     *
+     * @param site   a site in [0, sites())
+     * @param buffer an array of at least {@link #maxDegree()} elements
+     * @return the number of neighbors written
+     */
+    public abstract int neighbors(int site, int[] buffer);
+
+    /**
+     * Returns whether a site lies on the top boundary.
+     *
+     * @param site a site in [0, sites())
+     * @return true if the site is on the top boundary
+     */
+    public abstract boolean isTop(int site);
+
+    /**
+     * Returns whether a site lies on the bottom boundary.
+     *
+     * @param site a site in [0, sites())
+     * @return true if the site is on the bottom boundary
+     */
+    public abstract boolean isBottom(int site);
+
+    /**
+     * Returns the number of forward directions each site owns a bond in.
+     *
+     * @return the number of bond directions
+     */
+    public abstract int bondDirections();
+
+    /**
+     * Returns the site at the other end of the bond a site owns in the given forward direction.
+     *
+     * @param site      a site in [0, sites())
+     * @param direction a direction in [0, bondDirections())
+     * @return the other end of the bond, or -1 if the site has no bond in that direction
+     */
+    public abstract int bondTarget(int site, int direction);
+}
@@ -0,0 +1,95 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * The n-by-n square lattice in which every site neighbors the eight sites around it,
+ * optionally periodic across columns. Sites are indexed as on {@link SquareLattice}.
+ */
+final class MooreLattice extends Lattice {
+
+    private final int n;
+    private final int bottomRow;
+    private final boolean periodic;
+
+    MooreLattice(int n, boolean periodic) {
+        super(n, 2, Percolation.MAX_ORDER);
+        this.n = n;
+        this.bottomRow = sites() - n;
+        this.periodic = periodic;
+    }
+
+    @Override
+    public int dimensions() {
+        return 2;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 8;
+    }
+
+    @Override
+    public int neighbors(int site, int[] buffer) {
+        int row = site - site % n;      // index of the first site in the row
+        int col = site % n;
+        int left = col > 0 ? col - 1 : periodic ? n - 1 : -1;
+        int right = col < n - 1 ? col + 1 : periodic ? 0 : -1;
+        int count = 0;
+        if (left >= 0) buffer[count++] = row + left;
+        if (right >= 0) buffer[count++] = row + right;
+        if (site >= n) {
+            int above = row - n;
+            buffer[count++] = above + col;
+            if (left >= 0) buffer[count++] = above + left;
+            if (right >= 0) buffer[count++] = above + right;
+        }
+        if (site < bottomRow) {
+            int below = row + n;
+            buffer[count++] = below + col;
+            if (left >= 0) buffer[count++] = below + left;
+            if (right >= 0) buffer[count++] = below + right;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= bottomRow;
+    }
+
+    @Override
+    public int bondDirections() {
+        return 4;
+    }
+
+    @Override
+    public int bondTarget(int site, int direction) {
+        int row = site - site % n;
+        int col = site % n;
+        if (direction == 0) {
+            // right
+            if (col < n - 1) return site + 1;
+            return periodic ? row : -1;
+        }
+        if (site >= bottomRow) {
+            return -1;
+        }
+        int below = row + n;
+        if (direction == 1) {
+            // down
+            return below + col;
+        }
+        if (direction == 2) {
+            // down and right
+            if (col < n - 1) return below + col + 1;
+            return periodic ? below : -1;
+        }
+        // down and left
+        if (col > 0) return below + col - 1;
+        return periodic ? below + n - 1 : -1;
+    }
+}
@@ -0,0 +1,227 @@
+package zaarour.dev.w1_percolation;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Estimates percolation observables over a whole range of occupation probabilities with the
+ * Newman-Ziff algorithm.
+ * <p>
+ * Each trial opens every site of the lattice once, in random order, and records after each
+ * step m whether the system percolates and the size of its largest cluster. Averaging over the
+ * trials gives the observables at a fixed number m of open sites; the value at occupation
+ * probability p is their average weighted by the binomial distribution of m. A single sweep
+ * per trial therefore replaces a separate experiment for every value of p.
+ * </p>
+ * <p>
+ * Counts are accumulated as integers, so the estimates for a seed do not depend on the
+ * parallelism level. Each worker records the largest cluster of its current sweep, 4 bytes per
+ * site, and adds it block by block to totals shared by all workers, 8 bytes per site in all;
+ * the step at which each trial first percolates takes 4 bytes per trial.
+ * </p>
+ */
+public class NewmanZiff {
+
+    // Shared totals are added in blocks of 2^BLOCK_SHIFT steps, each under its own lock
+    private static final int BLOCK_SHIFT = 14;
+
+    private final int sites;
+    private final int trials;
+    private final double[] spanning;    // spanning[m] = fraction of trials percolating with m open sites
+    private final double[] largest;     // largest[m] = mean largest cluster with m open sites, per site
+
+    /**
+     * Runs the sweeps on the given lattice.
+     *
+     * @param lattice     the lattice of sites
+     * @param trials      the number of sweeps
+     * @param parallelism the maximum number of sweeps running at the same time
+     * @param seed        the seed of the root generator the per-trial generators are split from
+     * @throws IllegalArgumentException if lattice is null, or trials or parallelism is not
+     *                                  positive
+     */
+    public NewmanZiff(Lattice lattice, int trials, int parallelism, long seed) {
+        if (lattice == null) {
+            throw new IllegalArgumentException("lattice cannot be null");
+        }
+        if (trials <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("trials and parallelism should be greater than 0");
+        }
+        this.sites = lattice.sites();
+        this.trials = trials;
+
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[trials];
+        for (int t = 0; t < trials; t++) {
+            randoms[t] = root.split();
+        }
+
+        // Worker w runs trials w, w + workers, ...; its sweeps are added to the shared totals
+        int workers = Math.min(parallelism, trials);
+        int[] spanningStep = new int[trials];         // 0 if the trial never percolated
+        long[] largestSum = new long[sites + 1];
+        int blocks = (sites >>> BLOCK_SHIFT) + 1;
+        Object[] locks = new Object[blocks];
+        for (int b = 0; b < blocks; b++) {
+            locks[b] = new Object();
+        }
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            pool.submit(() -> IntStream.range(0, workers).parallel().forEach(w -> {
+                int[] largestCluster = new int[sites + 1];
+                for (int t = w; t < trials; t += workers) {
+                    spanningStep[t] = sweep(lattice, randoms[t], largestCluster);
+                    // start at a different block in every worker so that they rarely wait
+                    for (int i = 0; i < blocks; i++) {
+                        int b = (int) ((i + (long) w * blocks / workers) % blocks);
+                        int from = b << BLOCK_SHIFT;
+                        int to = Math.min(sites + 1, from + (1 << BLOCK_SHIFT));
+                        synchronized (locks[b]) {
+                            for (int m = from; m < to; m++) {
+                                largestSum[m] += largestCluster[m];
+                            }
+                        }
+                    }
+                }
+            })).join();
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        long[] firstSpanning = new long[sites + 1];
+        for (int step : spanningStep) {
+            if (step > 0) {
+                firstSpanning[step]++;
+            }
+        }
+        this.spanning = new double[sites + 1];
+        this.largest = new double[sites + 1];
+        long percolated = 0;
+        for (int m = 0; m <= sites; m++) {
+            percolated += firstSpanning[m];
+            spanning[m] = (double) percolated / trials;
+            largest[m] = (double) largestSum[m] / trials / sites;
+        }
+    }
+
+    // Open every site in random order, recording the largest cluster after every step; returns
+    // the step at which the system first percolates, 0 if it never does
+    private static int sweep(Lattice lattice, SplittableRandom random, int[] largestCluster) {
+        int sites = lattice.sites();
+        int[] order = new int[sites];
+        for (int i = 0; i < sites; i++) {
+            order[i] = i;
+        }
+        Percolation percolation = new Percolation(lattice);
+        int spanningStep = 0;
+        for (int m = 1; m <= sites; m++) {
+            int j = m - 1 + random.nextInt(sites - m + 1);
+            int site = order[j];
+            order[j] = order[m - 1];
+            order[m - 1] = site;
+
+            percolation.open(site);
+            if (spanningStep == 0 && percolation.percolates()) {
+                spanningStep = m;
+            }
+            largestCluster[m] = percolation.largestClusterSize();
+        }
+        return spanningStep;
+    }
+
+    /**
+     * Returns the number of sites of the lattice.
+     *
+     * @return the number of sites
+     */
+    public int sites() {
+        return sites;
+    }
+
+    /**
+     * Returns the number of sweeps performed.
+     *
+     * @return the number of sweeps
+     */
+    public int trials() {
+        return trials;
+    }
+
+    /**
+     * Returns the estimated probability that the system percolates when each site is open
+     * independently with probability p.
+     *
+     * @param p the occupation probability
+     * @return the percolation probability
+     * @throws IllegalArgumentException if p is not in [0, 1]
+     */
+    public double percolationProbability(double p) {
+        return convolve(spanning, p);
+    }
+
+    /**
+     * Returns the estimated fraction of sites in the largest cluster when each site is open
+     * independently with probability p.
+     *
+     * @param p the occupation probability
+     * @return the mean size of the largest cluster divided by the number of sites
+     * @throws IllegalArgumentException if p is not in [0, 1]
+     */
+    public double largestClusterFraction(double p) {
+        return convolve(largest, p);
+    }
+
+    // Average of observable[m] weighted by the binomial(sites, p) probability of m. Weights are
+    // built outwards from the mode by their ratios and cut off once negligible, which keeps
+    // the cost near O(sqrt(sites)) and avoids overflowing binomial coefficients.
+    private double convolve(double[] observable, double p) {
+        if (!(p >= 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("p should be in [0, 1]");
+        }
+        if (p == 0.0) return observable[0];
+        if (p == 1.0) return observable[sites];
+
+        double odds = p / (1 - p);
+        int mode = (int) Math.min(sites, Math.floor((sites + 1) * p));
+        double total = 1.0;
+        double sum = observable[mode];
+
+        double weight = 1.0;
+        for (int m = mode + 1; m <= sites; m++) {
+            weight *= odds * (sites - m + 1) / m;
+            if (weight < 1e-16) break;
+            total += weight;
+            sum += weight * observable[m];
+        }
+        weight = 1.0;
+        for (int m = mode - 1; m >= 0; m--) {
+            weight *= (m + 1) / (odds * (sites - m));
+            if (weight < 1e-16) break;
+            total += weight;
+            sum += weight * observable[m];
+        }
+        return sum / total;
+    }
+
+    public static void main(String[] args) {
+        int N = 256;
+        int trials = 100;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        Stopwatch timeW = new Stopwatch();
+
+        NewmanZiff nz = new NewmanZiff(Lattice.square(N), trials, parallelism, 1L);
+        for (double p = 0.55; p <= 0.6301; p += 0.005) {
+            StdOut.printf("p = %.3f\tR(p) = %.5f\tP(p) = %.5f\n",
+                    p, nz.percolationProbability(p), nz.largestClusterFraction(p));
+        }
+
+        double time = timeW.elapsedTime();
+        StdOut.println("The total time is:\t" + time);
+    }
+}
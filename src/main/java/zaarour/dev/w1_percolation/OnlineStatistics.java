@@ -0,0 +1,60 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * Running sample mean and variance of a stream of values, updated with Welford's algorithm.
+ * Memory use is constant no matter how many values are added.
+ */
+final class OnlineStatistics {
+
+    private long count;
+    private double mean;
+    private double m2;      // sum of squared deviations from the current mean
+
+    /**
+     * Adds a value to the sample.
+     *
+     * @param x the value to add
+     */
+    void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    /**
+     * Returns the number of values added so far.
+     *
+     * @return the sample size
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Returns the sample mean, or {@code Double.NaN} if no value was added.
+     *
+     * @return the sample mean
+     */
+    double mean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the sample standard deviation, or {@code Double.NaN} with fewer than two values.
+     *
+     * @return the sample standard deviation
+     */
+    double stddev() {
+        return count < 2 ? Double.NaN : Math.sqrt(m2 / (count - 1));
+    }
+
+    /**
+     * Returns the half-width of the 95% confidence interval around the mean.
+     *
+     * @return 1.96 times the standard error of the mean
+     */
+    double halfWidth95() {
+        return 1.96 * stddev() / Math.sqrt(count);
+    }
+}
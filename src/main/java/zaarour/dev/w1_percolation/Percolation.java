@@ -1,39 +1,104 @@
 package zaarour.dev.w1_percolation;
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.Arrays;
+
+import static zaarour.dev.w1_percolation.ClusterForest.clear;
+import static zaarour.dev.w1_percolation.ClusterForest.isSet;
+import static zaarour.dev.w1_percolation.ClusterForest.set;
 
 /**
  * The Percolation class models a percolation system using an n-by-n grid of sites.
  * Each site can be either open or blocked. A full site is an open site that can be connected
  * to an open site in the top row via a chain of neighboring (left, right, up, down) open sites.
  * The system percolates iff top and bottom are connected by open sites.
+ * <p>
+ * Other topologies, such as periodic, 8-neighbor or 3-D lattices, are supported through
+ * {@link #Percolation(Lattice)}. Rows and columns only address 2-D lattices; sites of any
+ * lattice can be addressed by their flat index.
+ * </p>
+ * <p>
+ * Open sites are tracked by a single weighted quick-union structure with path compression.
+ * Instead of virtual top and bottom sites, every root carries flags telling whether its
+ * component touches the top or the bottom row, which avoids backwash without a second
+ * union-find.
+ * </p>
+ * <p>
+ * The union-find also keeps cluster statistics up to date as sites open: the number of
+ * clusters, the largest cluster, the largest spanning cluster and, on request, the number of
+ * clusters of every size. Each is answered in constant time, without a pass over the grid.
+ * </p>
+ * <p>
+ * Storage is kept compact for very large grids: a root stores the negated size of its
+ * component in the parent array, and the open, top and bottom flags are packed into bitsets,
+ * for about 4.4 bytes per site. The largest supported order is {@value #MAX_ORDER}, the
+ * largest n for which n*n sites can be indexed by an int.
+ * </p>
+ * <p>
+ * Sites can also be closed again. Union-find cannot split components, so a close only marks
+ * the connectivity as stale; the next {@code isFull} or {@code percolates} query rebuilds it
+ * from the open sites in linear time, and any opens in between are folded into that rebuild.
+ * A burst of closes and opens therefore costs a single rebuild. To replay long mixed
+ * streams of opens and closes, use {@link PercolationReplay} instead.
+ * </p>
  *
  */
 public class Percolation {
 
-    private final WeightedQuickUnionUF grid;
-    private final WeightedQuickUnionUF full;
+    /**
+     * The largest grid order whose site count still fits in an int.
+     */
+    public static final int MAX_ORDER = 46340;
+
+    private final Lattice lattice;
+    private final ClusterForest clusters;
+    private final long[] open;      // open[i / 64] bit i set if site i is open
+    private final int[] neighbors;  // scratch buffer for the neighbors of the site being linked
     private final int order;
-    private final int virtualTop;
-    private final int virtualBottom;
     private int openSites;
-    private final boolean[] openNodes;
+    private boolean stale;          // a site was closed since the components were last built
 
     /**
      * Initializes a Percolation object with an n-by-n grid, where all sites are initially blocked.
      *
      * @param n the size of the grid (n-by-n)
-     * @throws IllegalArgumentException if n is less than or equal to zero
+     * @throws IllegalArgumentException if n is less than or equal to zero, or greater than
+     *                                  {@link #MAX_ORDER}
      */
     public Percolation(int n) {
-        requireArgument(n > 0);
-        this.grid = new WeightedQuickUnionUF(n * n + 2);
-        this.full = new WeightedQuickUnionUF(n * n + 1);
-        this.order = n;
+        this(Lattice.square(n));
+    }
+
+    /**
+     * Initializes a Percolation object on the given lattice, where all sites are initially
+     * blocked.
+     *
+     * @param lattice the lattice of sites
+     * @throws IllegalArgumentException if lattice is null
+     */
+    public Percolation(Lattice lattice) {
+        this(lattice, false);
+    }
+
+    /**
+     * Initializes a Percolation object on the given lattice, where all sites are initially
+     * blocked, optionally keeping the number of clusters of every size up to date so that
+     * {@link #clustersOfSize(int)} and {@link #clusterSizeDistribution()} can answer. That
+     * histogram costs 4 bytes per site.
+     *
+     * @param lattice          the lattice of sites
+     * @param sizeDistribution whether to maintain the cluster-size histogram
+     * @throws IllegalArgumentException if lattice is null
+     */
+    public Percolation(Lattice lattice, boolean sizeDistribution) {
+        if (lattice == null) {
+            throw new IllegalArgumentException("Lattice cannot be null");
+        }
+        this.lattice = lattice;
+        this.clusters = new ClusterForest(lattice.sites(), sizeDistribution);
+        this.open = new long[(lattice.sites() + 63) >>> 6];
+        this.neighbors = new int[lattice.maxDegree()];
+        this.order = lattice.order();
         this.openSites = 0;
-        this.virtualTop = arrayIndex(n, n) + 1;
-        this.virtualBottom = arrayIndex(n, n) + 2;
-        this.openNodes = new boolean[n * n];
     }
 
     /**
@@ -43,36 +108,83 @@ public class Percolation {
      * @param col the column of the site to be opened
      */
     public void open(int row, int col) {
-        validateIndices(row, col);
-
-        if (!isOpen(row, col)) {
+        openSite(arrayIndex(row, col));
+    }
 
-            int index = arrayIndex(row, col);
-            openNodes[index] = true;
-            openSites++;
+    /**
+     * Opens the site at the specified flat index if it is not already open.
+     * Site (row, col) has index {@code (row - 1) * n + (col - 1)}.
+     *
+     * @param index the index of the site to be opened
+     * @throws IllegalArgumentException if index is outside [0, n*n)
+     */
+    public void open(int index) {
+        validateIndex(index);
+        openSite(index);
+    }
 
-            // Connect with virtual top or bottom if applicable
-            if (row == 1) {
-                grid.union(virtualTop, index);
-                full.union(virtualTop, index);
-            }
-            if (row == order) {
-                grid.union(virtualBottom, index);
-            }
+    /**
+     * Opens the sites {@code indices[from..to)}, in order, skipping those already open.
+     *
+     * @param indices the flat indices of the sites to be opened
+     * @param from    the first position in indices, inclusive
+     * @param to      the last position in indices, exclusive
+     * @throws IllegalArgumentException if indices is null, the range is invalid, or any index
+     *                                  in the range is outside [0, n*n)
+     */
+    public void openAll(int[] indices, int from, int to) {
+        validateRange(indices, from, to);
+        for (int i = from; i < to; i++) {
+            int index = indices[i];
+            validateIndex(index);
+            openSite(index);
+        }
+    }
 
-            // Connect with neighboring open sites
-            int[][] neighbors = {
-                    {row - 1, col}, {row + 1, col}, {row, col - 1}, {row, col + 1}
-            };
-            for (int[] neighbor : neighbors) {
-                int r = neighbor[0];
-                int c = neighbor[1];
-                if (isValidIndex(r, c) && isOpen(r, c)) {
-                    grid.union(arrayIndex(r, c), index);
-                    full.union(arrayIndex(r, c), index);
-                }
-            }
+    /**
+     * Opens the sites {@code indices[from..to)} in order, stopping as soon as the system
+     * percolates. When the system percolates after the call, the last site taken is the one
+     * whose opening made it percolate, so a single pass over an opening sequence yields its
+     * exact percolation point.
+     *
+     * @param indices the flat indices of the sites to be opened
+     * @param from    the first position in indices, inclusive
+     * @param to      the last position in indices, exclusive
+     * @return the number of positions taken from indices, 0 if the system already percolates
+     * @throws IllegalArgumentException if indices is null, the range is invalid, or any index
+     *                                  taken from the range is outside [0, n*n)
+     */
+    public int openUntilPercolates(int[] indices, int from, int to) {
+        validateRange(indices, from, to);
+        ensureConnected();
+        int i = from;
+        while (!clusters.spans() && i < to) {
+            int index = indices[i++];
+            validateIndex(index);
+            openSite(index);
         }
+        return i - from;
+    }
+
+    /**
+     * Closes the site at the specified row and column if it is open.
+     *
+     * @param row the row of the site to be closed
+     * @param col the column of the site to be closed
+     */
+    public void close(int row, int col) {
+        closeSite(arrayIndex(row, col));
+    }
+
+    /**
+     * Closes the site at the specified flat index if it is open.
+     *
+     * @param index the index of the site to be closed
+     * @throws IllegalArgumentException if index is outside [0, n*n)
+     */
+    public void close(int index) {
+        validateIndex(index);
+        closeSite(index);
     }
 
     /**
@@ -83,8 +195,19 @@ public class Percolation {
      * @return true if the site is open, false otherwise
      */
     public boolean isOpen(int row, int col) {
-        validateIndices(row, col);
-        return openNodes[arrayIndex(row, col)];
+        return isSet(open, arrayIndex(row, col));
+    }
+
+    /**
+     * Checks if the site at the specified flat index is open.
+     *
+     * @param index the index of the site
+     * @return true if the site is open, false otherwise
+     * @throws IllegalArgumentException if index is outside [0, n*n)
+     */
+    public boolean isOpenIndex(int index) {
+        validateIndex(index);
+        return isSet(open, index);
     }
 
     /**
@@ -95,8 +218,19 @@ public class Percolation {
      * @return true if the site is full, false otherwise
      */
     public boolean isFull(int row, int col) {
-        int index = arrayIndex(row, col);
-        return isOpen(row, col) && grid.find(index) == grid.find(virtualTop);
+        return isFullSite(arrayIndex(row, col));
+    }
+
+    /**
+     * Checks if the site at the specified flat index is full.
+     *
+     * @param index the index of the site
+     * @return true if the site is full, false otherwise
+     * @throws IllegalArgumentException if index is outside [0, n*n)
+     */
+    public boolean isFullIndex(int index) {
+        validateIndex(index);
+        return isFullSite(index);
     }
 
     /**
@@ -114,10 +248,159 @@ public class Percolation {
      * @return true if the system percolates, false otherwise
      */
     public boolean percolates() {
-        return grid.find(virtualTop) == grid.find(virtualBottom);
+        ensureConnected();
+        return clusters.spans();
+    }
+
+    /**
+     * Returns the number of clusters of open sites. O(1).
+     *
+     * @return the number of clusters
+     */
+    public int numberOfClusters() {
+        ensureConnected();
+        return clusters.count();
+    }
+
+    /**
+     * Returns the number of sites in the largest cluster of open sites. O(1).
+     *
+     * @return the size of the largest cluster, 0 if no site is open
+     */
+    public int largestClusterSize() {
+        ensureConnected();
+        return clusters.largest();
+    }
+
+    /**
+     * Returns the number of sites in the largest cluster connecting top and bottom. O(1).
+     *
+     * @return the size of the largest spanning cluster, 0 if the system does not percolate
+     */
+    public int spanningClusterSize() {
+        ensureConnected();
+        return clusters.largestSpanning();
+    }
+
+    /**
+     * Returns the number of clusters of open sites with exactly the given size. O(1).
+     *
+     * @param size the cluster size
+     * @return the number of clusters of that size
+     * @throws UnsupportedOperationException if the size distribution is not maintained
+     */
+    public int clustersOfSize(int size) {
+        int[] histogram = histogram();
+        return size <= 0 || size >= histogram.length ? 0 : histogram[size];
+    }
+
+    /**
+     * Returns the cluster-size distribution: entry s is the number of clusters of open sites
+     * with exactly s sites. The array is a copy of length {@code largestClusterSize() + 1}.
+     *
+     * @return the cluster-size distribution
+     * @throws UnsupportedOperationException if the size distribution is not maintained
+     */
+    public int[] clusterSizeDistribution() {
+        int[] histogram = histogram();
+        return Arrays.copyOf(histogram, clusters.largest() + 1);
+    }
+
+    private int[] histogram() {
+        int[] histogram = clusters.histogram();
+        if (histogram == null)
+            throw new UnsupportedOperationException(
+                    "Cluster sizes are only counted by Percolation(lattice, true)."
+            );
+        ensureConnected();
+        return histogram;
+    }
+
+    private boolean isFullSite(int index) {
+        ensureConnected();
+        return isSet(open, index) && clusters.touchesTop(index);
+    }
+
+    // Open a site whose index has already been validated
+    private void openSite(int index) {
+        if (isSet(open, index)) {
+            return;
+        }
+        set(open, index);
+        openSites++;
+        if (!stale) {
+            clusters.add(index, lattice.isTop(index), lattice.isBottom(index));
+            int count = lattice.neighbors(index, neighbors);
+            for (int k = 0; k < count; k++) {
+                int neighbor = neighbors[k];
+                if (isSet(open, neighbor)) {
+                    clusters.union(index, neighbor);
+                }
+            }
+        }
+    }
+
+    // Close a site whose index has already been validated
+    private void closeSite(int index) {
+        if (!isSet(open, index)) {
+            return;
+        }
+        clear(open, index);
+        openSites--;
+        stale = true;
+    }
+
+    // Rebuild the components from scratch if a site was closed since the last query
+    private void ensureConnected() {
+        if (!stale) {
+            return;
+        }
+        clusters.clear();
+        stale = false;
+
+        // Flag the open boundary sites while every site is still its own root
+        for (int w = 0; w < open.length; w++) {
+            for (long bits = open[w]; bits != 0; bits &= bits - 1) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                clusters.add(index, lattice.isTop(index), lattice.isBottom(index));
+            }
+        }
+
+        // Then connect every open site through the bonds it owns, so each pair is united once
+        int directions = lattice.bondDirections();
+        for (int w = 0; w < open.length; w++) {
+            for (long bits = open[w]; bits != 0; bits &= bits - 1) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int direction = 0; direction < directions; direction++) {
+                    int neighbor = lattice.bondTarget(index, direction);
+                    if (neighbor >= 0 && isSet(open, neighbor)) {
+                        clusters.union(index, neighbor);
+                    }
+                }
+            }
+        }
+    }
+
+    // number of unions that merged two components, if metrics are enabled
+    long unionCount() {
+        return clusters.unionCount();
+    }
+
+    // number of find operations, if metrics are enabled
+    long findCount() {
+        return clusters.findCount();
+    }
+
+    // total parent links followed by find operations, if metrics are enabled
+    long pathLength() {
+        return clusters.pathLength();
     }
 
     private int arrayIndex(int row, int col) {
+        if (lattice.dimensions() != 2)
+            throw new UnsupportedOperationException(
+                    "Rows and columns only address 2-D lattices; use flat indices instead."
+            );
         validateIndices(row, col);
         return (row - 1) * order + (col - 1);
     }
@@ -129,13 +412,21 @@ public class Percolation {
             );
     }
 
-    private boolean isValidIndex(int row, int col) {
-        return row > 0 && col > 0 && row <= order && col <= order;
+    private void validateIndex(int index) {
+        if (index < 0 || index >= lattice.sites())
+            throw new IllegalArgumentException("Invalid index provided: " + index + ".");
     }
 
-    private void requireArgument(boolean expression) {
-        if (!expression) {
-            throw new IllegalArgumentException("Grid order must be greater than 0");
-        }
+    private static void validateRange(int[] indices, int from, int to) {
+        if (indices == null)
+            throw new IllegalArgumentException("Indices cannot be null.");
+        if (from < 0 || to > indices.length || from > to)
+            throw new IllegalArgumentException(
+                    "Invalid range provided: [" + from + ", " + to + ")."
+            );
+    }
+
+    private boolean isValidIndex(int row, int col) {
+        return row > 0 && col > 0 && row <= order && col <= order;
     }
 }
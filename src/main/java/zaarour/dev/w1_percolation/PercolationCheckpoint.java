@@ -0,0 +1,213 @@
+package zaarour.dev.w1_percolation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only record of the completed trials of a {@link PercolationStats} experiment, so that
+ * an experiment interrupted by a dead JVM can be resumed where it stopped.
+ * <p>
+ * The file is a 40-byte header describing the experiment, followed by the threshold of every
+ * completed trial in trial order, 8 bytes each. The per-trial generators are split off the root
+ * generator in trial order, so the seed and the number of thresholds are all the generator
+ * state there is: a resumed experiment splits the root once per stored trial and carries on
+ * with the exact stream the interrupted one would have used next.
+ * </p>
+ * <p>
+ * Thresholds are written through to the file after every round of trials; a trailing partial
+ * record left by a crash in the middle of a write is discarded on resume.
+ * </p>
+ */
+final class PercolationCheckpoint implements AutoCloseable {
+
+    private static final int MAGIC = 0x50435054;     // "PCPT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int RECORD_BYTES = Double.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long seed;
+    private final double[] thresholds;
+    private ByteBuffer pending;
+
+    private PercolationCheckpoint(Path file, FileChannel channel, long seed, double[] thresholds) {
+        this.file = file;
+        this.channel = channel;
+        this.seed = seed;
+        this.thresholds = thresholds;
+        this.pending = ByteBuffer.allocate(64 * RECORD_BYTES);
+    }
+
+    /**
+     * Opens the checkpoint of an experiment, creating it if the file is missing or empty.
+     *
+     * @param file    the checkpoint file
+     * @param lattice the lattice of the experiment
+     * @param bond    whether the experiment opens bonds
+     * @param seed    the seed to record in a new file
+     * @param seeded  whether seed was chosen by the caller, in which case an existing file must
+     *                have been written with the same seed
+     * @return the checkpoint, positioned after the last complete record
+     * @throws IllegalArgumentException if the file is not a checkpoint, or was written for a
+     *                                  different experiment
+     * @throws UncheckedIOException     if the file cannot be read or written
+     */
+    static PercolationCheckpoint open(Path file, Lattice lattice, boolean bond, long seed, boolean seeded) {
+        ByteBuffer header = header(lattice, bond, seed);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size == 0) {
+                writeFully(channel, header, 0L);
+                channel.position(HEADER_BYTES);
+                return new PercolationCheckpoint(file, channel, seed, new double[0]);
+            }
+
+            ByteBuffer stored = ByteBuffer.allocate(HEADER_BYTES);
+            while (stored.hasRemaining() && channel.read(stored, stored.position()) > 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            stored.flip();
+            if (stored.remaining() < HEADER_BYTES || stored.getInt(0) != MAGIC || stored.getInt(4) != VERSION) {
+                throw new IllegalArgumentException(file + " is not a percolation checkpoint");
+            }
+            long storedSeed = stored.getLong(32);
+            if (!seeded) {
+                header.putLong(32, storedSeed);
+            }
+            if (!header.equals(stored)) {
+                throw new IllegalArgumentException(file + " was written for a different experiment");
+            }
+
+            int count = (int) Math.min(Integer.MAX_VALUE, (size - HEADER_BYTES) / RECORD_BYTES);
+            ByteBuffer records = ByteBuffer.allocate(count * RECORD_BYTES);
+            while (records.hasRemaining()
+                    && channel.read(records, HEADER_BYTES + records.position()) > 0) {
+                // records were counted from the file size, so this only stops at the end
+            }
+            records.flip();
+            double[] thresholds = new double[count];
+            records.asDoubleBuffer().get(thresholds);
+            PercolationCheckpoint checkpoint = new PercolationCheckpoint(file, channel, storedSeed, thresholds);
+            checkpoint.keep(count);
+            return checkpoint;
+        }
+        catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Cannot open checkpoint " + file, e);
+        }
+        catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // seed of the root generator of the experiment
+    long seed() {
+        return seed;
+    }
+
+    // thresholds of the trials completed before this checkpoint was opened, in trial order
+    double[] thresholds() {
+        return thresholds;
+    }
+
+    /**
+     * Drops every record after the first {@code trials}, such as a partial record left by a
+     * crash, so that new thresholds are appended right after the complete ones.
+     *
+     * @param trials the number of records to keep
+     */
+    void keep(int trials) {
+        try {
+            long end = HEADER_BYTES + (long) trials * RECORD_BYTES;
+            channel.truncate(end);
+            channel.position(end);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file, e);
+        }
+    }
+
+    // queue the threshold of the next trial; written by the next flush()
+    void add(double threshold) {
+        if (!pending.hasRemaining()) {
+            pending = ByteBuffer.allocate(2 * pending.capacity()).put(pending.flip());
+        }
+        pending.putDouble(threshold);
+    }
+
+    // append the queued thresholds to the file
+    void flush() {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file, e);
+        }
+        finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Flushes the queued thresholds, forces them to the storage device and closes the file.
+     */
+    @Override
+    public void close() {
+        try (FileChannel closing = channel) {
+            flush();
+            closing.force(false);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot close checkpoint " + file, e);
+        }
+    }
+
+    private static ByteBuffer header(Lattice lattice, boolean bond, long seed) {
+        int bonds = 0;
+        for (int site = 0; site < lattice.sites(); site++) {
+            for (int direction = 0; direction < lattice.bondDirections(); direction++) {
+                if (lattice.bondTarget(site, direction) >= 0) bonds++;
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(bond ? 1 : 0)
+                .putInt(lattice.dimensions())
+                .putInt(lattice.order())
+                .putInt(lattice.maxDegree())
+                .putInt(lattice.bondDirections())
+                .putInt(bonds)             // tells periodic lattices from bounded ones
+                .putLong(seed);
+        return header.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        ByteBuffer copy = buffer.duplicate();
+        while (copy.hasRemaining()) {
+            position += channel.write(copy, position);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        }
+        catch (IOException ignored) {
+            // already failing; the original exception is more useful
+        }
+    }
+}
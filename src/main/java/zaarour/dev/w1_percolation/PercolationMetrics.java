@@ -0,0 +1,45 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * Receives the hot-path counters of each completed percolation trial.
+ * <p>
+ * Counting is switched on for the whole JVM with {@code -Dpercolation.metrics=jfr}, which also
+ * makes {@link PercolationStats} report every trial as a JFR event that can be recorded with
+ * {@code -XX:StartFlightRecording}; any other value, or none, leaves it off. The switch is read
+ * once into a static final constant, so with it off the JIT removes the counting code from
+ * {@link Percolation} altogether.
+ * </p>
+ */
+public interface PercolationMetrics {
+
+    /**
+     * Whether {@link Percolation} maintains its union-find counters.
+     */
+    boolean ENABLED = "jfr".equals(System.getProperty("percolation.metrics"));
+
+    /**
+     * Discards every report.
+     */
+    PercolationMetrics NONE = (order, openSites, unions, finds, pathLength, elapsedNanos) -> { };
+
+    /**
+     * Called once per trial, from the thread that ran it.
+     *
+     * @param order        the size of the grid (n-by-n)
+     * @param openSites    the number of sites opened before the system percolated
+     * @param unions       the number of unions that merged two components
+     * @param finds        the number of find operations
+     * @param pathLength   the total number of parent links followed by those finds
+     * @param elapsedNanos the wall-clock time of the trial, in nanoseconds
+     */
+    void trialCompleted(int order, int openSites, long unions, long finds, long pathLength, long elapsedNanos);
+
+    /**
+     * Returns the backend selected by {@code -Dpercolation.metrics}.
+     *
+     * @return a JFR backend if metrics are enabled, {@link #NONE} otherwise
+     */
+    static PercolationMetrics fromSystemProperties() {
+        return ENABLED ? new JfrPercolationMetrics() : NONE;
+    }
+}
@@ -0,0 +1,251 @@
+package zaarour.dev.w1_percolation;
+
+import java.util.Arrays;
+
+/**
+ * The {@code PercolationReplay} class answers, for a stream of open and close events on an
+ * n-by-n grid, whether the system percolates after each event.
+ * <p>
+ * It uses offline dynamic connectivity: every site is open during a set of time intervals,
+ * each interval is stored on the O(log E) nodes of a segment tree over the E event positions
+ * that cover it, and a depth-first walk of the tree opens the sites of a node on the way down
+ * and rolls them back on the way up. The union-find uses union by size without path
+ * compression so that each union can be undone in constant time. The whole stream is
+ * answered in O(E log E log n) time, instead of rebuilding a grid after every close.
+ * </p>
+ * <p>
+ * Events are plain ints: {@link #openEvent(int)} and {@link #closeEvent(int)} encode a flat
+ * site index (see {@link Percolation#open(int)}). Opening an open site or closing a blocked
+ * site is a no-op, as it is on {@link Percolation}.
+ * </p>
+ */
+public final class PercolationReplay {
+
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte SPANNING = TOP | BOTTOM;
+
+    private final int order;
+    private final int[] parent;
+    private final int[] size;
+    private final byte[] flags;         // TOP/BOTTOM bits, valid on roots only
+    private final boolean[] active;     // sites open at the current point of the walk
+    private int spanning;               // number of roots touching both top and bottom
+
+    // Undo log: a site index for a union (the root that was attached), or ~site for an open,
+    // with the flags the surviving root had before the union
+    private int[] undoSite = new int[16];
+    private byte[] undoFlags = new byte[16];
+    private int undoSize;
+
+    // Segment tree over event positions; each node holds a linked list of site intervals
+    private int[] head;
+    private int[] nextEntry = new int[16];
+    private int[] entrySite = new int[16];
+    private int entries;
+
+    private PercolationReplay(int n) {
+        this.order = n;
+        this.parent = new int[n * n];
+        this.size = new int[n * n];
+        this.flags = new byte[n * n];
+        this.active = new boolean[n * n];
+        for (int i = 0; i < n * n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    /**
+     * Returns the event that opens the site with the given flat index.
+     *
+     * @param index the index of the site
+     * @return the encoded event
+     */
+    public static int openEvent(int index) {
+        return index;
+    }
+
+    /**
+     * Returns the event that closes the site with the given flat index.
+     *
+     * @param index the index of the site
+     * @return the encoded event
+     */
+    public static int closeEvent(int index) {
+        return ~index;
+    }
+
+    /**
+     * Replays the events on an initially blocked n-by-n grid.
+     *
+     * @param n      the size of the grid (n-by-n)
+     * @param events the open and close events, in order
+     * @return an array whose entry t tells whether the grid percolates after event t
+     * @throws IllegalArgumentException if n is out of range, events is null, or an event
+     *                                  refers to a site outside the grid
+     */
+    public static boolean[] replay(int n, int[] events) {
+        if (n <= 0 || n > Percolation.MAX_ORDER) {
+            throw new IllegalArgumentException("Grid order must be between 1 and " + Percolation.MAX_ORDER);
+        }
+        if (events == null) {
+            throw new IllegalArgumentException("Events cannot be null.");
+        }
+        boolean[] percolates = new boolean[events.length];
+        if (events.length == 0) {
+            return percolates;
+        }
+
+        PercolationReplay replay = new PercolationReplay(n);
+        replay.schedule(events);
+        replay.walk(1, 0, events.length, percolates);
+        return percolates;
+    }
+
+    // Turn the event stream into open intervals and store them on the segment tree
+    private void schedule(int[] events) {
+        int sites = parent.length;
+        int time = events.length;
+        head = new int[4 * time];
+        Arrays.fill(head, -1);
+
+        int[] openedAt = new int[sites];
+        Arrays.fill(openedAt, -1);
+        for (int t = 0; t < time; t++) {
+            int event = events[t];
+            int site = event >= 0 ? event : ~event;
+            if (site >= sites) {
+                throw new IllegalArgumentException("Invalid index provided: " + site + ".");
+            }
+            if (event >= 0 && openedAt[site] < 0) {
+                openedAt[site] = t;
+            }
+            else if (event < 0 && openedAt[site] >= 0) {
+                insert(1, 0, time, openedAt[site], t, site);
+                openedAt[site] = -1;
+            }
+        }
+        for (int site = 0; site < sites; site++) {
+            if (openedAt[site] >= 0) {
+                insert(1, 0, time, openedAt[site], time, site);
+            }
+        }
+    }
+
+    // Add site to every maximal node of [lo, hi) covered by [from, to)
+    private void insert(int node, int lo, int hi, int from, int to, int site) {
+        if (to <= lo || hi <= from) {
+            return;
+        }
+        if (from <= lo && hi <= to) {
+            if (entries == entrySite.length) {
+                entrySite = Arrays.copyOf(entrySite, 2 * entries);
+                nextEntry = Arrays.copyOf(nextEntry, 2 * entries);
+            }
+            entrySite[entries] = site;
+            nextEntry[entries] = head[node];
+            head[node] = entries++;
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        insert(2 * node, lo, mid, from, to, site);
+        insert(2 * node + 1, mid, hi, from, to, site);
+    }
+
+    private void walk(int node, int lo, int hi, boolean[] percolates) {
+        int mark = undoSize;
+        for (int e = head[node]; e >= 0; e = nextEntry[e]) {
+            activate(entrySite[e]);
+        }
+        if (hi - lo == 1) {
+            percolates[lo] = spanning > 0;
+        }
+        else {
+            int mid = (lo + hi) >>> 1;
+            walk(2 * node, lo, mid, percolates);
+            walk(2 * node + 1, mid, hi, percolates);
+        }
+        rollback(mark);
+    }
+
+    private void activate(int site) {
+        active[site] = true;
+        byte f = 0;
+        if (site < order) f |= TOP;
+        if (site >= parent.length - order) f |= BOTTOM;
+        flags[site] = f;
+        if (f == SPANNING) spanning++;
+        push(~site, (byte) 0);
+
+        int col = site % order;
+        if (site >= order) connect(site, site - order);
+        if (site < parent.length - order) connect(site, site + order);
+        if (col > 0) connect(site, site - 1);
+        if (col < order - 1) connect(site, site + 1);
+    }
+
+    private void connect(int site, int neighbor) {
+        if (!active[neighbor]) {
+            return;
+        }
+        int rootP = find(site);
+        int rootQ = find(neighbor);
+        if (rootP == rootQ) {
+            return;
+        }
+        if (size[rootP] < size[rootQ]) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+        }
+        byte before = flags[rootP];
+        if (before == SPANNING) spanning--;
+        if (flags[rootQ] == SPANNING) spanning--;
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        flags[rootP] |= flags[rootQ];
+        if (flags[rootP] == SPANNING) spanning++;
+        push(rootQ, before);
+    }
+
+    // Undo every union and open logged after mark, most recent first
+    private void rollback(int mark) {
+        while (undoSize > mark) {
+            undoSize--;
+            int entry = undoSite[undoSize];
+            if (entry < 0) {
+                int site = ~entry;
+                if (flags[site] == SPANNING) spanning--;
+                flags[site] = 0;
+                active[site] = false;
+            }
+            else {
+                int rootP = parent[entry];
+                if (flags[rootP] == SPANNING) spanning--;
+                flags[rootP] = undoFlags[undoSize];
+                if (flags[rootP] == SPANNING) spanning++;
+                if (flags[entry] == SPANNING) spanning++;
+                size[rootP] -= size[entry];
+                parent[entry] = entry;
+            }
+        }
+    }
+
+    private int find(int p) {
+        while (p != parent[p]) {
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private void push(int site, byte before) {
+        if (undoSize == undoSite.length) {
+            undoSite = Arrays.copyOf(undoSite, 2 * undoSize);
+            undoFlags = Arrays.copyOf(undoFlags, 2 * undoSize);
+        }
+        undoSite[undoSize] = site;
+        undoFlags[undoSize] = before;
+        undoSize++;
+    }
+}
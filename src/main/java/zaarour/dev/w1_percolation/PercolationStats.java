@@ -2,9 +2,15 @@ package zaarour.dev.w1_percolation;
 
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
 import edu.princeton.cs.algs4.Stopwatch;
 
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Performs Monte Carlo simulation to estimate the percolation threshold.
  * <p>
@@ -18,68 +24,280 @@ import edu.princeton.cs.algs4.Stopwatch;
  * Estimates the percolation threshold by averaging over multiple trials.
  * Computes the sample mean and standard deviation for accuracy.
  * </p>
+ * <p>
+ * Each trial opens sites in the order of a random permutation drawn lazily with a partial
+ * Fisher-Yates shuffle, so no draw is ever wasted on a site that is already open.
+ * </p>
+ * <p>
+ * Trials are independent, so they can be spread over a {@link ForkJoinPool}. Each trial draws
+ * from its own {@link SplittableRandom}, split off a root generator in trial order, so the
+ * thresholds for a given seed are the same whatever the parallelism level.
+ * </p>
+ * <p>
+ * Thresholds are folded into running statistics as trials complete, in trial order, instead of
+ * being kept in an array. Given a target {@code epsilon}, the experiment stops at the first
+ * trial after which the 95% confidence interval is narrower than {@code epsilon}. To keep every
+ * thread busy, up to {@value #LOOKAHEAD} trials per thread are started ahead of the one being
+ * folded; those started past the stopping trial are cancelled, or finished and discarded.
+ * </p>
+ * <p>
+ * Progress goes to a {@link ProgressListener}, by default an {@link AsyncProgressReporter} that
+ * prints from its own thread at most once a second, so console I/O never holds up the trials.
+ * </p>
+ * <p>
+ * Besides the n-by-n grid, experiments can run on any {@link Lattice}, opening either sites or,
+ * for bond percolation, the bonds between them.
+ * </p>
+ * <p>
+ * Running with {@code -Dpercolation.metrics=jfr} reports the union-find counters and timing of
+ * every trial through {@link PercolationMetrics}.
+ * </p>
+ * <p>
+ * Long experiments can record every completed trial in a checkpoint file, see
+ * {@link Builder#checkpoint(Path)}; running the same experiment again with the same file
+ * resumes it, and ends with the same statistics as an uninterrupted run.
+ * </p>
  *
  */
 public class PercolationStats {
-    private final int order;
-    private final int trials;
-    private final double[] thresholds;
+
+    // Fewest trials before the confidence interval is trusted enough to stop early
+    private static final int MIN_TRIALS = 30;
+
+    // Rounds of trials, one per thread, that may run ahead of the trial being folded
+    private static final int LOOKAHEAD = 4;
+
+    private final Lattice lattice;
+    private final boolean bond;
+    private final int maxTrials;
+    private final double epsilon;
+    private final OnlineStatistics statistics = new OnlineStatistics();
+    private final PercolationMetrics metrics;
 
 
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
-        validate(n, trials);
+        this(new Builder(n, trials));
+    }
 
-        this.order = n;
-        this.trials = trials;
-        this.thresholds = new double[trials];
+    /**
+     * Performs independent trials on an n-by-n grid using up to {@code parallelism} threads.
+     *
+     * @param n           the size of the grid (n-by-n)
+     * @param trials      the number of trials to perform
+     * @param parallelism the maximum number of trials running at the same time
+     * @param seed        the seed of the root generator the per-trial generators are split from
+     * @throws IllegalArgumentException if any of n, trials or parallelism is not positive
+     */
+    public PercolationStats(int n, int trials, int parallelism, long seed) {
+        this(n, trials, 0.0, parallelism, seed);
+    }
 
-        for (int t = 0; t < trials; ++t) {
-            Percolation percolation = new Percolation(n);
+    /**
+     * Performs independent trials on an n-by-n grid until the 95% confidence interval is
+     * narrower than {@code epsilon}, or {@code maxTrials} trials have been run. At least
+     * {@value #MIN_TRIALS} trials are run before stopping early.
+     *
+     * @param n           the size of the grid (n-by-n)
+     * @param maxTrials   the largest number of trials to perform
+     * @param epsilon     the target width of the confidence interval; 0 runs all trials
+     * @param parallelism the maximum number of trials running at the same time
+     * @param seed        the seed of the root generator the per-trial generators are split from
+     * @throws IllegalArgumentException if any of n, maxTrials or parallelism is not positive,
+     *                                  or if epsilon is negative or NaN
+     */
+    public PercolationStats(int n, int maxTrials, double epsilon, int parallelism, long seed) {
+        this(new Builder(n, maxTrials).epsilon(epsilon).parallelism(parallelism).seed(seed));
+    }
 
-            int openSitesCount = 0;
-            while (!percolation.percolates()) {
-                openRandomNode(percolation);
-                openSitesCount++;
-            }
+    private PercolationStats(Builder builder) {
+        this.lattice = builder.lattice;
+        this.bond = builder.bond;
+        this.maxTrials = builder.maxTrials;
+        this.epsilon = builder.epsilon;
+        this.metrics = builder.metrics;
 
-            this.thresholds[t] = (double) openSitesCount / (double) (n * n);
-            System.out.printf(
-                    "Trial %3d/%-3d completed. Percolation Threshold (p*): %.5f, Open Sites: %,d\n",
-                    t + 1, trials, this.thresholds[t], openSitesCount);
+        int parallelism = builder.parallelism;
+        long seed = builder.seeded ? builder.seed : StdRandom.uniformLong(Long.MAX_VALUE);
+        PercolationCheckpoint checkpoint = builder.checkpoint == null
+                ? null
+                : PercolationCheckpoint.open(builder.checkpoint, lattice, bond, seed, builder.seeded);
+        if (checkpoint != null) {
+            seed = checkpoint.seed();
+        }
+        ProgressListener listener = builder.listener;
+        AsyncProgressReporter reporter = listener == null ? new AsyncProgressReporter() : null;
+        if (reporter != null) {
+            listener = reporter;
         }
 
+        // every site, or every bond, in increasing order; only needed while the trials run
+        int[] units = bond ? BondPercolation.bonds(lattice) : identity(lattice.sites());
+        SplittableRandom root = new SplittableRandom(seed);
+        ForkJoinPool pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<Double>> inFlight = new ArrayDeque<>();
+        try {
+            int done = checkpoint == null ? 0 : resume(checkpoint, root, listener);
+
+            // Keep up to LOOKAHEAD rounds of trials in flight and fold them in trial order, so a
+            // slow trial holds up the fold but not the threads
+            int window = LOOKAHEAD * parallelism;
+            int submitted = done;
+            while (done < maxTrials && !isPreciseEnough()) {
+                double threshold;
+                if (pool == null) {
+                    threshold = runTrial(units, root.split());
+                }
+                else {
+                    while (submitted < maxTrials && inFlight.size() < window) {
+                        // Split in trial order so that scheduling never affects which stream a trial gets
+                        SplittableRandom random = root.split();
+                        inFlight.add(pool.submit(() -> runTrial(units, random)));
+                        submitted++;
+                    }
+                    threshold = inFlight.remove().join();
+                }
+
+                statistics.add(threshold);
+                if (checkpoint != null) {
+                    checkpoint.add(threshold);
+                }
+                done++;
+                listener.trialCompleted(done, maxTrials, threshold, statistics.mean(), statistics.halfWidth95());
+                if (checkpoint != null && done % parallelism == 0) {
+                    checkpoint.flush();
+                }
+            }
+        }
+        finally {
+            if (pool != null) {
+                // trials run ahead of an early stop are discarded; wait for the running ones
+                for (ForkJoinTask<Double> task : inFlight) {
+                    task.cancel(false);
+                }
+                pool.shutdown();
+                awaitQuietly(pool);
+            }
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+            if (reporter != null) {
+                reporter.close();
+            }
+        }
     }
 
     // sample mean of percolation threshold
     public double mean() {
-        return StdStats.mean(this.thresholds);
+        return statistics.mean();
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return StdStats.stddev(this.thresholds);
+        return statistics.stddev();
     }
 
     // low endpoint of 95% confidence interval
     public double confidenceLo() {
-        return this.mean() - 1.96 * this.stddev() / Math.sqrt(this.trials);
+        return this.mean() - 1.96 * this.stddev() / Math.sqrt(trials());
     }
 
     // high endpoint of 95% confidence interval
     public double confidenceHi() {
-        return this.mean() + 1.96 * this.stddev() / Math.sqrt(this.trials);
+        return this.mean() + 1.96 * this.stddev() / Math.sqrt(trials());
+    }
+
+    // number of trials actually performed
+    public int trials() {
+        return (int) statistics.count();
     }
 
 
-    // Open random nodes
-    private void openRandomNode(Percolation percolation) {
-        int c, r;
-        do {
-            c = StdRandom.uniformInt(1, this.order + 1);
-            r = StdRandom.uniformInt(1, this.order + 1);
-        } while (percolation.isOpen(c, r));
-        percolation.open(c, r);
+    private static void awaitQuietly(ForkJoinPool pool) {
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Fold the trials stored in a checkpoint, stopping where this experiment would have stopped,
+    // and split the root generator once per trial so the next trial gets the next stream. Records
+    // past the stopping trial stay in the file for a later, longer run; no trial is appended
+    // after them, since this experiment is already complete
+    private int resume(PercolationCheckpoint checkpoint, SplittableRandom root, ProgressListener listener) {
+        int done = 0;
+        for (double threshold : checkpoint.thresholds()) {
+            if (done == maxTrials || isPreciseEnough()) {
+                break;
+            }
+            root.split();
+            statistics.add(threshold);
+            done++;
+            listener.trialCompleted(done, maxTrials, threshold, statistics.mean(), statistics.halfWidth95());
+        }
+        return done;
+    }
+
+    private boolean isPreciseEnough() {
+        return statistics.count() >= Math.min(MIN_TRIALS, maxTrials)
+                && 2 * statistics.halfWidth95() < epsilon;
+    }
+
+    // Run a single trial and return its threshold
+    private double runTrial(int[] units, SplittableRandom random) {
+        long start = PercolationMetrics.ENABLED ? System.nanoTime() : 0L;
+        int[] openingOrder = units.clone();
+        int total = openingOrder.length;
+        int chunk = this.lattice.order();
+
+        // Partial Fisher-Yates: openingOrder[0..shuffled) is a uniform random prefix of a
+        // permutation of the sites or bonds, drawn one row's worth at a time and opened in bulk
+        int shuffled = 0;
+        int opened = 0;
+        if (this.bond) {
+            BondPercolation percolation = new BondPercolation(this.lattice);
+            while (!percolation.percolates()) {
+                shuffled = shuffle(openingOrder, shuffled, Math.min(shuffled + chunk, total), random);
+                opened += percolation.openUntilPercolates(openingOrder, opened, shuffled);
+            }
+            if (PercolationMetrics.ENABLED) {
+                metrics.trialCompleted(this.lattice.order(), opened, percolation.unionCount(),
+                        percolation.findCount(), percolation.pathLength(), System.nanoTime() - start);
+            }
+        }
+        else {
+            Percolation percolation = new Percolation(this.lattice);
+            while (!percolation.percolates()) {
+                shuffled = shuffle(openingOrder, shuffled, Math.min(shuffled + chunk, total), random);
+                opened += percolation.openUntilPercolates(openingOrder, opened, shuffled);
+            }
+            if (PercolationMetrics.ENABLED) {
+                metrics.trialCompleted(this.lattice.order(), opened, percolation.unionCount(),
+                        percolation.findCount(), percolation.pathLength(), System.nanoTime() - start);
+            }
+        }
+        return (double) opened / total;
+    }
+
+    // Extend the shuffled prefix of a from position from to position to; returns to
+    private static int shuffle(int[] a, int from, int to, SplittableRandom random) {
+        for (int i = from; i < to; i++) {
+            int j = i + random.nextInt(a.length - i);
+            int swap = a[j];
+            a[j] = a[i];
+            a[i] = swap;
+        }
+        return to;
+    }
+
+    private static int[] identity(int sites) {
+        int[] siteOrder = new int[sites];
+        for (int i = 0; i < sites; i++) {
+            siteOrder[i] = i;
+        }
+        return siteOrder;
     }
 
     private static void validate(int order, int trials) {
@@ -88,14 +306,142 @@ public class PercolationStats {
         }
     }
 
+    /**
+     * Collects the settings of an experiment; {@link #run()} performs it.
+     * <p>
+     * By default trials run on one thread with a seed drawn from {@link StdRandom}, all
+     * {@code maxTrials} trials are performed, and progress is printed by an
+     * {@link AsyncProgressReporter} that is closed when the experiment ends.
+     * </p>
+     */
+    public static final class Builder {
+        private final Lattice lattice;
+        private final int maxTrials;
+        private boolean bond;
+        private double epsilon = 0.0;
+        private int parallelism = 1;
+        private long seed;
+        private boolean seeded;
+        private ProgressListener listener;
+        private PercolationMetrics metrics = PercolationMetrics.fromSystemProperties();
+        private Path checkpoint;
+
+        /**
+         * Starts an experiment on an n-by-n grid.
+         *
+         * @param n         the size of the grid (n-by-n)
+         * @param maxTrials the largest number of trials to perform
+         * @throws IllegalArgumentException if n or maxTrials is not positive
+         */
+        public Builder(int n, int maxTrials) {
+            validate(n, maxTrials);
+            this.lattice = Lattice.square(n);
+            this.maxTrials = maxTrials;
+        }
+
+        /**
+         * Starts an experiment on the given lattice.
+         *
+         * @param lattice   the lattice of sites
+         * @param maxTrials the largest number of trials to perform
+         * @throws IllegalArgumentException if lattice is null or maxTrials is not positive
+         */
+        public Builder(Lattice lattice, int maxTrials) {
+            if (lattice == null) {
+                throw new IllegalArgumentException("lattice cannot be null");
+            }
+            validate(lattice.order(), maxTrials);
+            this.lattice = lattice;
+            this.maxTrials = maxTrials;
+        }
+
+        // open bonds instead of sites; the threshold is then a fraction of the bonds
+        public Builder bond(boolean bond) {
+            this.bond = bond;
+            return this;
+        }
+
+        // stop once the 95% confidence interval is narrower than epsilon; 0 runs all trials
+        public Builder epsilon(double epsilon) {
+            if (!(epsilon >= 0.0)) {
+                throw new IllegalArgumentException("epsilon should not be negative");
+            }
+            this.epsilon = epsilon;
+            return this;
+        }
+
+        // maximum number of trials running at the same time
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism should be greater than 0");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        // seed of the root generator the per-trial generators are split from
+        public Builder seed(long seed) {
+            this.seed = seed;
+            this.seeded = true;
+            return this;
+        }
+
+        // receives every completed trial, in trial order; ProgressListener.QUIET for batch jobs
+        public Builder listener(ProgressListener listener) {
+            if (listener == null) {
+                throw new IllegalArgumentException("listener cannot be null");
+            }
+            this.listener = listener;
+            return this;
+        }
+
+        // receives the hot-path counters of every trial when PercolationMetrics.ENABLED
+        public Builder metrics(PercolationMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("metrics cannot be null");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Records every completed trial in the given file, and resumes the experiment from it
+         * if it already holds trials. The file must have been written by the same experiment:
+         * same lattice, same kind of percolation and, if {@link #seed(long)} is set, same seed.
+         * Without a seed, the seed stored in the file is used.
+         *
+         * @param file the checkpoint file
+         * @return this builder
+         * @throws IllegalArgumentException if file is null
+         */
+        public Builder checkpoint(Path file) {
+            if (file == null) {
+                throw new IllegalArgumentException("checkpoint file cannot be null");
+            }
+            this.checkpoint = file;
+            return this;
+        }
+
+        // perform the experiment
+        public PercolationStats run() {
+            return new PercolationStats(this);
+        }
+    }
+
     public static void main(String[] args) {
         int N = 4096;
-        int trials = 100;
+        int maxTrials = 100;
+        double epsilon = 1e-4;
+        int parallelism = Runtime.getRuntime().availableProcessors();
 
         Stopwatch timeW = new Stopwatch();
 
-        PercolationStats ps = new PercolationStats(N, trials);
+        PercolationStats ps = new PercolationStats.Builder(N, maxTrials)
+                .epsilon(epsilon)
+                .parallelism(parallelism)
+                .run();
 
+        StdOut.println("trials:\t\t\t\t\t= " + ps.trials());
         StdOut.println("mean:\t\t\t\t\t= " + ps.mean());
         StdOut.println("stddev:\t\t\t\t\t= " + ps.stddev());
 
@@ -0,0 +1,30 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * Receives the progress of a {@link PercolationStats} experiment.
+ * <p>
+ * Trials are reported one at a time, in trial order, from the thread that runs the experiment,
+ * and the experiment waits for each call to return. Implementations should therefore hand
+ * anything slow, console output included, to another thread, as {@link AsyncProgressReporter}
+ * does.
+ * </p>
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Ignores every report, for batch jobs.
+     */
+    ProgressListener QUIET = (trial, maxTrials, threshold, mean, halfWidth) -> { };
+
+    /**
+     * Called after each trial has been folded into the running statistics.
+     *
+     * @param trial     the number of trials completed so far
+     * @param maxTrials the largest number of trials the experiment will perform
+     * @param threshold the percolation threshold estimated by this trial
+     * @param mean      the running mean of the thresholds
+     * @param halfWidth the running half-width of the 95% confidence interval
+     */
+    void trialCompleted(int trial, int maxTrials, double threshold, double mean, double halfWidth);
+}
@@ -0,0 +1,68 @@
+package zaarour.dev.w1_percolation;
+
+/**
+ * The n-by-n square lattice with left, right, up and down neighbors, optionally periodic
+ * across columns. Site (row, col) has index {@code (row - 1) * n + (col - 1)}.
+ */
+final class SquareLattice extends Lattice {
+
+    private final int n;
+    private final int bottomRow;
+    private final boolean periodic;
+
+    SquareLattice(int n, boolean periodic) {
+        super(n, 2, Percolation.MAX_ORDER);
+        this.n = n;
+        this.bottomRow = sites() - n;
+        this.periodic = periodic;
+    }
+
+    @Override
+    public int dimensions() {
+        return 2;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 4;
+    }
+
+    @Override
+    public int neighbors(int site, int[] buffer) {
+        int col = site % n;
+        int count = 0;
+        if (site >= n) buffer[count++] = site - n;
+        if (site < bottomRow) buffer[count++] = site + n;
+        if (col > 0) buffer[count++] = site - 1;
+        else if (periodic) buffer[count++] = site + n - 1;
+        if (col < n - 1) buffer[count++] = site + 1;
+        else if (periodic) buffer[count++] = site - n + 1;
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= bottomRow;
+    }
+
+    @Override
+    public int bondDirections() {
+        return 2;
+    }
+
+    @Override
+    public int bondTarget(int site, int direction) {
+        if (direction == 0) {
+            // right
+            if (site % n < n - 1) return site + 1;
+            return periodic ? site - n + 1 : -1;
+        }
+        // down
+        return site < bottomRow ? site + n : -1;
+    }
+}
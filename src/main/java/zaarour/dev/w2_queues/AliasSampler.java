@@ -0,0 +1,85 @@
+package zaarour.dev.w2_queues;
+
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * Samples from a fixed set of weighted items in O(1) with Vose's alias method.
+ * <p>
+ * Building the tables takes O(n). Each of the n columns holds the probability of keeping its
+ * own item and the alias that takes the rest of the column, so a sample is one uniform column
+ * and one biased coin. Use it when the weights do not change; otherwise see
+ * {@link WeightedRandomizedQueue}.
+ * </p>
+ *
+ * @param <Item> the type of the items
+ */
+public class AliasSampler<Item> {
+
+    private final Item[] items;
+    private final double[] keep;    // keep[i] = probability of returning items[i] in column i
+    private final int[] alias;      // alias[i] = item returned otherwise
+
+    /**
+     * Builds a sampler returning items[i] with probability proportional to weights[i].
+     *
+     * @param items   the items
+     * @param weights the weight of each item
+     * @throws IllegalArgumentException if either array is null or empty, their lengths differ,
+     *                                  an item is null, or a weight is not positive and finite
+     */
+    public AliasSampler(Item[] items, double[] weights) {
+        if (items == null || weights == null || items.length == 0 || items.length != weights.length) {
+            throw new IllegalArgumentException("Items and weights must be non-empty and of the same length");
+        }
+        int n = items.length;
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (items[i] == null) {
+                throw new IllegalArgumentException("Null item at " + i);
+            }
+            if (!(weights[i] > 0.0) || Double.isInfinite(weights[i])) {
+                throw new IllegalArgumentException("Weight must be positive and finite: " + weights[i]);
+            }
+            total += weights[i];
+        }
+
+        this.items = items.clone();
+        this.keep = new double[n];
+        this.alias = new int[n];
+
+        // scale so the average column is 1, then pair each short column with a long one
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1.0) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            keep[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] -= 1.0 - scaled[less];
+            if (scaled[more] < 1.0) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        // whatever is left is 1 up to rounding
+        while (largeCount > 0) keep[large[--largeCount]] = 1.0;
+        while (smallCount > 0) keep[small[--smallCount]] = 1.0;
+    }
+
+    // return a random item, chosen with probability proportional to its weight
+    public Item sample() {
+        int column = StdRandom.uniformInt(items.length);
+        return StdRandom.uniformDouble() < keep[column] ? items[column] : items[alias[column]];
+    }
+
+    // return the number of items
+    public int size() {
+        return items.length;
+    }
+}
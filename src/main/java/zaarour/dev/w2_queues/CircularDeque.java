@@ -0,0 +1,143 @@
+package zaarour.dev.w2_queues;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A double-ended queue backed by a circular array, with the same API as {@link Deque}.
+ * <p>
+ * Items are stored in a power-of-two array between a head and a tail index that wrap around,
+ * so every operation is a couple of index updates, and iteration walks contiguous memory.
+ * The array doubles when full and halves when a quarter full, which keeps every operation
+ * amortized O(1) and the array between 25% and 100% full. That is 4 to 16 bytes per item with
+ * compressed references, against about 40 bytes for a {@link Deque} node.
+ * </p>
+ *
+ * @param <Item> the type of elements in the deque
+ */
+public class CircularDeque<Item> implements Iterable<Item> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private Item[] items;
+    private int head;       // index of the first item
+    private int n;          // size of the deque
+    private int modCount;   // structural changes, for fail-fast iterators
+
+    // construct an empty deque
+    public CircularDeque() {
+        items = newArray(MIN_CAPACITY);
+    }
+
+    // add the item to the front
+    public void addFirst(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Null item");
+        if (n == items.length) {
+            resize(2 * items.length);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        n++;
+        modCount++;
+    }
+
+    // add the item to the back
+    public void addLast(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Null item");
+        if (n == items.length) {
+            resize(2 * items.length);
+        }
+        items[(head + n) & (items.length - 1)] = item;
+        n++;
+        modCount++;
+    }
+
+    // remove and return the item from the front
+    public Item removeFirst() {
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        Item item = items[head];
+        items[head] = null;     // avoid loitering
+        head = (head + 1) & (items.length - 1);
+        n--;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    // remove and return the item from the back
+    public Item removeLast() {
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        int tail = (head + n - 1) & (items.length - 1);
+        Item item = items[tail];
+        items[tail] = null;     // avoid loitering
+        n--;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    // return the number of items on the deque
+    public int size() {
+        return n;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    public Iterator<Item> iterator() {
+        return new CircularDequeIterator();
+    }
+
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && n == items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    // move the items to a new array of the given power-of-two capacity, unwrapped to start at 0
+    private void resize(int capacity) {
+        if (capacity < 0)
+            throw new IllegalStateException("Deque too large");
+        Item[] copy = newArray(capacity);
+        int firstPart = Math.min(n, items.length - head);
+        System.arraycopy(items, head, copy, 0, firstPart);
+        System.arraycopy(items, 0, copy, firstPart, n - firstPart);
+        items = copy;
+        head = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Item> Item[] newArray(int capacity) {
+        return (Item[]) new Object[capacity];
+    }
+
+    private class CircularDequeIterator implements Iterator<Item> {
+        private final int expectedModCount = modCount;
+        private int i;
+
+        public boolean hasNext() {
+            return i < n;
+        }
+
+        public Item next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("No more items to return");
+            return items[(head + i++) & (items.length - 1)];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Remove operation not supported");
+        }
+    }
+
+    public static void main(String[] args){}
+}
@@ -0,0 +1,205 @@
+package zaarour.dev.w2_queues;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe randomized queue, split into independently locked stripes.
+ * <p>
+ * Each stripe is a small {@link RandomizedQueue}-style array guarded by its own lock, and
+ * every random choice uses {@link ThreadLocalRandom}, so threads neither share a lock nor a
+ * random generator unless they land on the same stripe. Enqueue puts the item on a random
+ * stripe, skipping stripes that are locked at that moment. Dequeue reads the size of every
+ * stripe without locking, picks a stripe with probability proportional to its size, then
+ * locks only that stripe and takes a uniformly random item from it. Every item is therefore
+ * removed with uniform probability as of the size snapshot; sizes that change between the
+ * snapshot and the lock make it approximate under contention. Use {@link RandomizedQueue}
+ * when exact uniformity matters more than throughput.
+ * </p>
+ *
+ * @param <Item> the type of elements in the queue
+ */
+public class ConcurrentRandomizedQueue<Item> {
+
+    private final Stripe[] stripes;
+
+    // construct an empty queue with a stripe per available processor, rounded up to a power of two
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty queue with at least the given number of stripes.
+     *
+     * @param concurrency the number of threads expected to use the queue at the same time
+     * @throws IllegalArgumentException if concurrency is not positive
+     */
+    public ConcurrentRandomizedQueue(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency should be greater than 0");
+        }
+        int count = Integer.highestOneBit(Math.min(concurrency, 1 << 16) * 2 - 1);
+        stripes = new Stripe[Math.max(2, count)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // add the item
+    public void enqueue(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Cannot enqueue null item");
+        }
+        int mask = stripes.length - 1;
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+        // take the first free stripe from a random start, then wait on the start one
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(start + i) & mask];
+            if (stripe.lock.tryLock()) {
+                try {
+                    stripe.add(item);
+                }
+                finally {
+                    stripe.lock.unlock();
+                }
+                return;
+            }
+        }
+        Stripe stripe = stripes[start];
+        stripe.lock.lock();
+        try {
+            stripe.add(item);
+        }
+        finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // remove and return a random item
+    public Item dequeue() {
+        Item item = poll();
+        if (item == null) {
+            throw new NoSuchElementException("ConcurrentRandomizedQueue is empty");
+        }
+        return item;
+    }
+
+    /**
+     * Removes and returns a random item, or returns null if every stripe was empty when it was
+     * looked at.
+     *
+     * @return a random item, or null
+     */
+    public Item poll() {
+        return take(true);
+    }
+
+    // return a random item (but do not remove it)
+    public Item sample() {
+        Item item = take(false);
+        if (item == null) {
+            throw new NoSuchElementException("ConcurrentRandomizedQueue is empty");
+        }
+        return item;
+    }
+
+    /**
+     * Returns the number of items. Under concurrent use this is only a snapshot that may be
+     * out of date as soon as it is returned.
+     *
+     * @return the number of items
+     */
+    public int size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    // is the queue empty? a snapshot, like size()
+    public boolean isEmpty() {
+        for (Stripe stripe : stripes) {
+            if (stripe.size > 0) return false;
+        }
+        return true;
+    }
+
+    // Pick a stripe in proportion to its size, as of unlocked reads, and take from it; read
+    // the sizes again if it was emptied in the meantime
+    private Item take(boolean remove) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            long total = 0;
+            for (Stripe stripe : stripes) {
+                total += stripe.size;
+            }
+            if (total == 0) {
+                return null;
+            }
+            long target = random.nextLong(total);
+            int i = 0;
+            for (; i < stripes.length - 1; i++) {
+                int size = stripes[i].size;
+                if (target < size) break;
+                target -= size;
+            }
+            Item item = takeFrom(stripes[i], remove, random);
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Item takeFrom(Stripe stripe, boolean remove, ThreadLocalRandom random) {
+        if (stripe.size == 0) {
+            return null;
+        }
+        stripe.lock.lock();
+        try {
+            return (Item) stripe.take(remove, random);
+        }
+        finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // An unordered array of items; every method but the size read runs under lock
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private Object[] items = new Object[8];
+        private volatile int size;
+
+        void add(Object item) {
+            if (size == items.length) {
+                Object[] copy = new Object[2 * items.length];
+                System.arraycopy(items, 0, copy, 0, size);
+                items = copy;
+            }
+            items[size] = item;
+            size = size + 1;
+        }
+
+        Object take(boolean remove, ThreadLocalRandom random) {
+            int n = size;
+            if (n == 0) {
+                return null;
+            }
+            int index = random.nextInt(n);
+            Object item = items[index];
+            if (remove) {
+                items[index] = items[n - 1];    // replace removed item with last item
+                items[n - 1] = null;            // avoid loitering
+                size = n - 1;
+                if (n - 1 > 8 && n - 1 == items.length / 4) {
+                    Object[] copy = new Object[items.length / 2];
+                    System.arraycopy(items, 0, copy, 0, n - 1);
+                    items = copy;
+                }
+            }
+            return item;
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package zaarour.dev.w2_queues;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A double-ended queue or deque is a generalization of a stack and a queue
  * that supports adding and removing items from either the front or the back of the data structure.
+ * <p>
+ * Whole collections can be added at either end in a single pass, and items drained from the
+ * front in bulk. {@link #stream()} runs on a sized {@link Spliterator} that, like the one of
+ * {@link java.util.LinkedList}, splits off arrays of growing size from the front, so parallel
+ * streams never walk the list just to find where to split.
+ * </p>
  *
  * @param <Item> the type of elements in the deque
  */
@@ -56,6 +68,103 @@ public class Deque<Item> implements Iterable<Item> {
         n++;
     }
 
+    /**
+     * Adds all items of a collection to the front, keeping their iteration order: the first
+     * item of the collection becomes the first item of the deque.
+     *
+     * @param items the items to add
+     * @throws IllegalArgumentException if items is null or contains null, in which case the
+     *                                  deque is left unchanged
+     */
+    public void addAllFirst(Collection<? extends Item> items) {
+        if (items == null)
+            throw new IllegalArgumentException("Null collection");
+        // Link the new nodes in front of the old first one, which is untouched until the end
+        Node oldFirst = first;
+        Node tail = null;
+        int added = 0;
+        for (Item item : items) {
+            if (item == null) {
+                first = oldFirst; // undo, the new nodes were never reachable from the rest
+                throw new IllegalArgumentException("Null item");
+            }
+            Node newNode = new Node();
+            newNode.item = item;
+            newNode.prev = tail;
+            if (tail == null)
+                first = newNode;
+            else
+                tail.next = newNode;
+            tail = newNode;
+            added++;
+        }
+        if (tail == null)
+            return;
+        tail.next = oldFirst;
+        if (oldFirst == null)
+            last = tail;
+        else
+            oldFirst.prev = tail;
+        n += added;
+    }
+
+    /**
+     * Adds all items of a collection to the back, keeping their iteration order: the last
+     * item of the collection becomes the last item of the deque.
+     *
+     * @param items the items to add
+     * @throws IllegalArgumentException if items is null or contains null, in which case the
+     *                                  deque is left unchanged
+     */
+    public void addAllLast(Collection<? extends Item> items) {
+        if (items == null)
+            throw new IllegalArgumentException("Null collection");
+        Node oldLast = last;
+        int added = 0;
+        for (Item item : items) {
+            if (item == null) {
+                // undo: cut the new nodes off the old last one
+                last = oldLast;
+                if (oldLast == null)
+                    first = null;
+                else
+                    oldLast.next = null;
+                throw new IllegalArgumentException("Null item");
+            }
+            Node newNode = new Node();
+            newNode.item = item;
+            newNode.prev = last;
+            if (last == null)
+                first = newNode;
+            else
+                last.next = newNode;
+            last = newNode;
+            added++;
+        }
+        n += added;
+    }
+
+    /**
+     * Removes up to {@code max} items from the front and passes them to the action, in order.
+     *
+     * @param action the action receiving the items
+     * @param max    the largest number of items to remove
+     * @return the number of items removed
+     * @throws IllegalArgumentException if action is null or max is negative
+     */
+    public int drainTo(Consumer<? super Item> action, int max) {
+        if (action == null)
+            throw new IllegalArgumentException("Null action");
+        if (max < 0)
+            throw new IllegalArgumentException("Negative max");
+        int drained = 0;
+        while (drained < max && !isEmpty()) {
+            action.accept(removeFirst());
+            drained++;
+        }
+        return drained;
+    }
+
     // remove and return the item from the front
     public Item removeFirst() {
         if (isEmpty())
@@ -98,6 +207,23 @@ public class Deque<Item> implements Iterable<Item> {
         return new DequeIterator();
     }
 
+    /**
+     * Returns a spliterator over the items from front to back. It is sized, and splits by
+     * copying batches of 1024, 2048, ... items from the front into arrays. The deque must not
+     * be modified while it is in use.
+     *
+     * @return a spliterator over the items
+     */
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new DequeSpliterator(first, n);
+    }
+
+    // a sequential stream of the items from front to back; call parallel() to split it
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
     private class DequeIterator implements Iterator<Item> {
         private Node current = first;
 
@@ -118,6 +244,66 @@ public class Deque<Item> implements Iterable<Item> {
         }
     }
 
+    private class DequeSpliterator implements Spliterator<Item> {
+        // batch sizes grow by this much with every split, as in LinkedList's spliterator
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+
+        private Node current;
+        private int remaining;
+        private int batch;      // size of the last batch split off
+
+        DequeSpliterator(Node current, int remaining) {
+            this.current = current;
+            this.remaining = remaining;
+        }
+
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null)
+                throw new NullPointerException();
+            if (remaining == 0)
+                return false;
+            Item item = current.item;
+            current = current.next;
+            remaining--;
+            action.accept(item);
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null)
+                throw new NullPointerException();
+            for (; remaining > 0; remaining--) {
+                Item item = current.item;
+                current = current.next;
+                action.accept(item);
+            }
+        }
+
+        // copy the next batch of items into an array and hand it to a new spliterator
+        public Spliterator<Item> trySplit() {
+            if (remaining <= 1)
+                return null;
+            int size = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), remaining);
+            Object[] items = new Object[size];
+            for (int i = 0; i < size; i++) {
+                items[i] = current.item;
+                current = current.next;
+            }
+            remaining -= size;
+            batch = size;
+            return Spliterators.spliterator(items, 0, size, ORDERED | NONNULL);
+        }
+
+        public long estimateSize() {
+            return remaining;
+        }
+
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     public static void main(String[] args){}
 
     private class Node {
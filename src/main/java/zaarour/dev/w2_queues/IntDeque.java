@@ -0,0 +1,154 @@
+package zaarour.dev.w2_queues;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A double-ended queue of {@code int} values, laid out like {@link CircularDeque} but on an
+ * {@code int[]}, so values are never boxed.
+ * <p>
+ * Adding and removing never allocate except when the array is resized, which keeps every
+ * operation amortized O(1). Iteration goes through a {@link PrimitiveIterator.OfInt} and
+ * {@link #stream()}, front to back. Besides the deque operations, {@link #peekFirst()} and
+ * {@link #peekLast()} serve breadth-first searches and sliding-window maxima.
+ * </p>
+ */
+public class IntDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] values;
+    private int head;       // index of the first value
+    private int n;          // size of the deque
+    private int modCount;   // structural changes, for fail-fast iterators
+
+    // construct an empty deque
+    public IntDeque() {
+        values = new int[MIN_CAPACITY];
+    }
+
+    // add the value to the front
+    public void addFirst(int value) {
+        if (n == values.length) {
+            resize(2 * values.length);
+        }
+        head = (head - 1) & (values.length - 1);
+        values[head] = value;
+        n++;
+        modCount++;
+    }
+
+    // add the value to the back
+    public void addLast(int value) {
+        if (n == values.length) {
+            resize(2 * values.length);
+        }
+        values[(head + n) & (values.length - 1)] = value;
+        n++;
+        modCount++;
+    }
+
+    // remove and return the value from the front
+    public int removeFirst() {
+        int value = peekFirst();
+        head = (head + 1) & (values.length - 1);
+        n--;
+        modCount++;
+        shrinkIfSparse();
+        return value;
+    }
+
+    // remove and return the value from the back
+    public int removeLast() {
+        int value = peekLast();
+        n--;
+        modCount++;
+        shrinkIfSparse();
+        return value;
+    }
+
+    // return the value at the front without removing it
+    public int peekFirst() {
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        return values[head];
+    }
+
+    // return the value at the back without removing it
+    public int peekLast() {
+        if (isEmpty())
+            throw new NoSuchElementException("Deque underflow");
+        return values[(head + n - 1) & (values.length - 1)];
+    }
+
+    // return the number of values on the deque
+    public int size() {
+        return n;
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // remove every value, keeping the current capacity
+    public void clear() {
+        head = 0;
+        n = 0;
+        modCount++;
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeIterator();
+    }
+
+    // the values from front to back
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), n,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private void shrinkIfSparse() {
+        if (values.length > MIN_CAPACITY && n == values.length / 4) {
+            resize(values.length / 2);
+        }
+    }
+
+    // move the values to a new array of the given power-of-two capacity, unwrapped to start at 0
+    private void resize(int capacity) {
+        if (capacity < 0)
+            throw new IllegalStateException("Deque too large");
+        int[] copy = new int[capacity];
+        int firstPart = Math.min(n, values.length - head);
+        System.arraycopy(values, head, copy, 0, firstPart);
+        System.arraycopy(values, 0, copy, firstPart, n - firstPart);
+        values = copy;
+        head = 0;
+    }
+
+    private class IntDequeIterator implements PrimitiveIterator.OfInt {
+        private final int expectedModCount = modCount;
+        private int i;
+
+        public boolean hasNext() {
+            return i < n;
+        }
+
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("No more values to return");
+            return values[(head + i++) & (values.length - 1)];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Remove operation not supported");
+        }
+    }
+}
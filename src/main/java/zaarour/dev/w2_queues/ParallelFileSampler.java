@@ -0,0 +1,194 @@
+package zaarour.dev.w2_queues;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Draws a uniform random sample of k whitespace-separated tokens from a file, sampling
+ * chunks of the file on several threads.
+ * <p>
+ * The file is cut into chunks of about the same size, each boundary moved forward to the next
+ * whitespace byte so that every token lies in exactly one chunk. Each chunk is memory-mapped
+ * and read by a {@link TokenReader} into its own {@link ReservoirSampler}, which leaves a
+ * uniform sample of up to k of the n<sub>i</sub> tokens of chunk i.
+ * </p>
+ * <p>
+ * The samples are merged exactly: how many of the k tokens come from each chunk follows the
+ * multivariate hypergeometric distribution over the chunk counts n<sub>i</sub>, drawn as k
+ * draws without replacement from an urn of N = &Sigma; n<sub>i</sub> balls, and that many
+ * tokens are then taken at random from the sample of each chunk. A uniform subset of a uniform
+ * subset is uniform, so every k-subset of the file is equally likely, whatever the number of
+ * chunks or threads. The merge costs O(k &times; chunks).
+ * </p>
+ */
+public final class ParallelFileSampler {
+
+    // largest chunk mapped at once; a mapping cannot exceed 2 GiB
+    private static final long MAX_CHUNK = 1L << 30;
+
+    private ParallelFileSampler() { }
+
+    /**
+     * Samples k tokens of a file using the given number of threads, in chunks of at most
+     * 1 GiB, four per thread for files that are small enough.
+     *
+     * @param file        the file to read
+     * @param k           the number of tokens to sample
+     * @param parallelism the maximum number of chunks read at the same time
+     * @param random      the generator the chunk generators are split from
+     * @return the sampled tokens in random order; every token if the file has at most k
+     * @throws IllegalArgumentException if file or random is null, k is negative, or
+     *                                  parallelism is not positive
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    public static List<String> sample(Path file, int k, int parallelism, SplittableRandom random) {
+        return sample(file, k, parallelism, 0L, random);
+    }
+
+    /**
+     * Samples k tokens of a file using the given number of threads and chunk size.
+     *
+     * @param file        the file to read
+     * @param k           the number of tokens to sample
+     * @param parallelism the maximum number of chunks read at the same time
+     * @param chunkBytes  the size of a chunk before moving its end to a token boundary, at most
+     *                    1 GiB; 0 picks one from the file size and the parallelism
+     * @param random      the generator the chunk generators are split from
+     * @return the sampled tokens in random order; every token if the file has at most k
+     * @throws IllegalArgumentException if file or random is null, k or chunkBytes is negative,
+     *                                  chunkBytes is above 1 GiB, or parallelism is not positive
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    public static List<String> sample(Path file, int k, int parallelism, long chunkBytes, SplittableRandom random) {
+        if (file == null || random == null) {
+            throw new IllegalArgumentException("file and random cannot be null");
+        }
+        if (k < 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("k should not be negative and parallelism should be greater than 0");
+        }
+        if (chunkBytes < 0 || chunkBytes > MAX_CHUNK) {
+            throw new IllegalArgumentException("chunkBytes should be between 0 and " + MAX_CHUNK);
+        }
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            long[] bounds = chunkBounds(channel, chunkBytes, parallelism);
+            int chunks = bounds.length - 1;
+
+            // Split in chunk order so that scheduling never affects which stream a chunk gets
+            SplittableRandom[] randoms = new SplittableRandom[chunks];
+            for (int i = 0; i < chunks; i++) {
+                randoms[i] = random.split();
+            }
+            List<ReservoirSampler<String>> samplers = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                samplers.add(new ReservoirSampler<>(k, randoms[i]));
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, Math.max(1, chunks)));
+            try {
+                pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(i ->
+                        read(channel, bounds[i], bounds[i + 1], samplers.get(i)))).join();
+            }
+            finally {
+                pool.shutdown();
+            }
+            return merge(samplers, k, random);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+    }
+
+    // Chunk boundaries: about size / chunkBytes chunks, each start moved to a whitespace byte
+    private static long[] chunkBounds(FileChannel channel, long chunkBytes, int parallelism) throws IOException {
+        long size = channel.size();
+        if (chunkBytes == 0) {
+            chunkBytes = Math.min(MAX_CHUNK, Math.max(1L << 16, -Math.floorDiv(-size, 4L * parallelism)));
+        }
+        int chunks = (int) Math.max(1, -Math.floorDiv(-size, chunkBytes));
+        long[] bounds = new long[chunks + 1];
+        for (int i = 1; i < chunks; i++) {
+            bounds[i] = Math.max(bounds[i - 1], tokenBoundary(channel, i * chunkBytes, size));
+        }
+        bounds[chunks] = size;
+        return bounds;
+    }
+
+    // the first position at or after pos that does not split a token
+    private static long tokenBoundary(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4096);
+        long p = pos - 1;       // a boundary is fine if the byte before it is whitespace
+        while (p < size) {
+            bytes.clear();
+            int read = channel.read(bytes, p);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                byte b = bytes.get(i);
+                if (b <= ' ' && b >= 0) return p + i + 1;
+            }
+            p += read;
+        }
+        return size;
+    }
+
+    private static void read(FileChannel channel, long start, long end, ReservoirSampler<String> sampler) {
+        if (start == end) return;
+        try {
+            TokenReader reader = new TokenReader(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            while (true) {
+                long skippable = sampler.skippable();
+                long skipped = reader.skip(skippable);
+                sampler.skip(skipped);
+                if (skipped < skippable) return;
+                String token = reader.next();
+                if (token == null) return;
+                sampler.add(token);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Draw how many of the k tokens come from each chunk, as k draws without replacement from
+    // the N tokens of the file, then take that many from each chunk's sample
+    private static List<String> merge(List<ReservoirSampler<String>> samplers, int k, SplittableRandom random) {
+        int chunks = samplers.size();
+        long[] remaining = new long[chunks];
+        long total = 0;
+        for (int i = 0; i < chunks; i++) {
+            remaining[i] = samplers.get(i).seen();
+            total += remaining[i];
+        }
+        int[] taken = new int[chunks];
+        for (int draw = 0; draw < k && total > 0; draw++) {
+            long target = random.nextLong(total);
+            int i = 0;
+            while (target >= remaining[i]) {
+                target -= remaining[i++];
+            }
+            remaining[i]--;
+            total--;
+            taken[i]++;
+        }
+
+        List<String> merged = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            // the chunk sample is in random order, so its head is a uniform subset of it
+            merged.addAll(samplers.get(i).sample().subList(0, taken[i]));
+        }
+        for (int i = merged.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            merged.set(j, merged.set(i, merged.get(j)));
+        }
+        return merged;
+    }
+}
@@ -3,15 +3,47 @@ package zaarour.dev.w2_queues;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Prints k tokens of standard input chosen uniformly at random, in random order.
+ * <p>
+ * By default every token is enqueued on a {@link RandomizedQueue}, which takes memory for the
+ * whole input. With {@code --stream}, the input is read in bulk by a {@link TokenReader} and
+ * sampled by a {@link ReservoirSampler}, which keeps only k tokens and skips over the ones it
+ * is certain to reject without decoding them; in that mode fewer than k tokens of input are
+ * all printed.
+ * </p>
+ * <p>
+ * With {@code --file <path>}, the tokens are read from a file instead, memory-mapped in chunks
+ * that are sampled on every core and merged by a {@link ParallelFileSampler}.
+ * </p>
+ */
 public class Permutation {
     public static void main(String[] args) {
 
-        if (args.length != 1) {
-            StdOut.println("Usage: java Permutation <k>");
+        boolean streaming = args.length == 2 && args[1].equals("--stream");
+        boolean file = args.length == 3 && args[1].equals("--file");
+        if (args.length != 1 && !streaming && !file) {
+            StdOut.println("Usage: java Permutation <k> [--stream | --file <path>]");
             return;
         }
 
         int k = Integer.parseInt(args[0]);
+        if (streaming || file) {
+            Iterable<String> sample = streaming ? stream(k)
+                    : ParallelFileSampler.sample(Path.of(args[2]), k,
+                            Runtime.getRuntime().availableProcessors(), new SplittableRandom());
+            for (String item : sample) {
+                StdOut.println(item);
+            }
+            return;
+        }
+
         RandomizedQueue<String> queue = new RandomizedQueue<>();
 
         // Read strings from standard input
@@ -25,4 +57,25 @@ public class Permutation {
         }
 
     }
+
+    // Sample k tokens of standard input in O(k) memory
+    private static Iterable<String> stream(int k) {
+        ReservoirSampler<String> sampler = new ReservoirSampler<>(k);
+        FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+        TokenReader reader = new TokenReader(in);
+        while (true) {
+            long skippable = sampler.skippable();
+            long skipped = reader.skip(skippable);
+            sampler.skip(skipped);
+            if (skipped < skippable) {
+                break;
+            }
+            String token = reader.next();
+            if (token == null) {
+                break;
+            }
+            sampler.add(token);
+        }
+        return sampler.sample();
+    }
 }
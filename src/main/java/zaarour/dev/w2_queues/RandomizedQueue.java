@@ -2,18 +2,76 @@ package zaarour.dev.w2_queues;
 
 import edu.princeton.cs.algs4.StdRandom;
 
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+/**
+ * A randomized queue is similar to a stack or queue, except that the item removed is chosen
+ * uniformly at random among items in the data structure.
+ * <p>
+ * {@link #iterator()} shuffles a copy of the items up front. {@link #lazyIterator()} instead
+ * draws the next position only when asked, so the first item costs O(1) and an iterator that
+ * reads k items uses O(k) memory, not O(n).
+ * </p>
+ * <p>
+ * Items are stored in segments of {@value #SEGMENT} slots. Up to one segment, the queue uses a
+ * single array that doubles when full, as before; past it, growing allocates one more segment
+ * and shrinking releases segments, so no resize copies more than one segment of items. The
+ * queue shrinks to half its capacity once the items fill no more than 1 / {@code shrinkDivisor}
+ * of it, never below the capacity it was created with; see
+ * {@link #RandomizedQueue(int, int)}.
+ * </p>
+ *
+ * @param <Item> the type of elements in the queue
+ */
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
-    private Item[] items;
+    private static final int SHIFT = 10;
+    private static final int SEGMENT = 1 << SHIFT;
+    private static final int MASK = SEGMENT - 1;
+
+    private Object[][] segments;    // segments[0] alone while the capacity is at most SEGMENT
+    private int capacity;
     private int n;
+    private int modCount;   // structural changes, for fail-fast lazy iterators
+    private final int minCapacity;      // automatic shrinking stops here
+    private final int shrinkDivisor;    // shrink when n <= capacity / shrinkDivisor; 0 never
 
     // construct an empty randomized queue
     public RandomizedQueue() {
-        items = (Item[]) new Object[2]; // initial capacity
-        n = 0;
+        this(2, 4);
+    }
+
+    // construct an empty randomized queue with room for initialCapacity items
+    public RandomizedQueue(int initialCapacity) {
+        this(initialCapacity, 4);
+    }
+
+    /**
+     * Constructs an empty randomized queue with room for {@code initialCapacity} items that
+     * halves its capacity when no more than 1 / {@code shrinkDivisor} of it is used. The gap
+     * between growing when full and shrinking at 1 / shrinkDivisor is what keeps a queue that
+     * oscillates around a size from resizing over and over: the default of 4 leaves it half
+     * full after a shrink, and larger divisors trade memory for fewer shrinks.
+     *
+     * @param initialCapacity the initial capacity, also the least capacity the queue shrinks to
+     * @param shrinkDivisor   at least 3, or 0 to never shrink but through {@link #trimToSize()}
+     * @throws IllegalArgumentException if initialCapacity is negative or shrinkDivisor is 1 or 2
+     *                                  or negative
+     */
+    public RandomizedQueue(int initialCapacity, int shrinkDivisor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity should not be negative");
+        }
+        if (shrinkDivisor != 0 && shrinkDivisor < 3) {
+            throw new IllegalArgumentException("shrinkDivisor should be 0 or at least 3");
+        }
+        this.minCapacity = initialCapacity;
+        this.shrinkDivisor = shrinkDivisor;
+        segments = new Object[][] { new Object[0] };
+        setCapacity(initialCapacity);
     }
 
     // add the item
@@ -21,10 +79,12 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (item == null) {
             throw new IllegalArgumentException("Cannot enqueue null item");
         }
-        if (n == items.length) {
-            resize(2 * items.length); // double the array size if full
+        if (n == capacity) {
+            // double a single array, then add one segment at a time
+            setCapacity(capacity < SEGMENT ? Math.min(SEGMENT, Math.max(2, 2 * capacity)) : capacity + SEGMENT);
         }
-        items[n++] = item;
+        set(n++, item);
+        modCount++;
     }
 
     // return the number of items on the randomized queue
@@ -32,13 +92,30 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return n;
     }
 
+    // return the number of items the queue can hold without growing
+    public int capacity() {
+        return capacity;
+    }
+
+    // grow, if needed, so that the queue holds minCapacity items without growing again
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > capacity) {
+            setCapacity(minCapacity);
+        }
+    }
+
+    // release the capacity not used by the items, up to a whole segment past the first one
+    public void trimToSize() {
+        setCapacity(n);
+    }
+
     // return a random item (but do not remove it)
     public Item sample() {
         if (isEmpty()) {
             throw new NoSuchElementException("RandomizedQueue is empty");
         }
         int randomIndex = StdRandom.uniformInt(0, n);
-        return items[randomIndex];
+        return get(randomIndex);
     }
 
     // is the randomized queue empty?
@@ -52,36 +129,156 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new NoSuchElementException("RandomizedQueue is empty");
         }
         int randomIndex = StdRandom.uniformInt(0, n);
-        Item item = items[randomIndex];
-        items[randomIndex] = items[n - 1]; // replace removed item with last item
-        items[n - 1] = null; // avoid loitering
+        Item item = get(randomIndex);
+        set(randomIndex, get(n - 1)); // replace removed item with last item
+        set(n - 1, null); // avoid loitering
         n--;
-        if (n > 0 && n == items.length / 4) {
-            resize(items.length / 2);
+        modCount++;
+        if (shrinkDivisor > 0 && capacity > minCapacity && n <= capacity / shrinkDivisor) {
+            setCapacity(Math.max(minCapacity, capacity / 2));
         }
         return item;
     }
 
-    // resize the array
-    private void resize(int capacity) {
-        Item[] copy = (Item[]) new Object[capacity];
-        for (int i = 0; i < n; i++) {
-            copy[i] = items[i];
+    private Item get(int i) {
+        return (Item) segments[i >>> SHIFT][i & MASK];
+    }
+
+    private void set(int i, Item item) {
+        segments[i >>> SHIFT][i & MASK] = item;
+    }
+
+    // Resize to at least target >= n slots: a single array up to SEGMENT, whole segments past it
+    private void setCapacity(int target) {
+        if (target <= SEGMENT) {
+            // all n <= target items are in the first segment
+            if (segments[0].length != target) {
+                Object[] copy = new Object[target];
+                System.arraycopy(segments[0], 0, copy, 0, n);
+                segments[0] = copy;
+            }
+            if (segments.length > 1) {
+                segments = new Object[][] { segments[0] };
+            }
+            capacity = target;
+            return;
         }
-        items = copy;
+        int current = capacity <= SEGMENT ? 1 : capacity >>> SHIFT;
+        int count = (int) (((long) target + MASK) >>> SHIFT);
+        if (segments[0].length < SEGMENT) {
+            segments[0] = Arrays.copyOf(segments[0], SEGMENT);
+        }
+        if (count > segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(count, 2 * segments.length));
+        }
+        for (int s = current; s < count; s++) {
+            segments[s] = new Object[SEGMENT];
+        }
+        Arrays.fill(segments, count, Math.max(count, current), null);
+        capacity = count * SEGMENT;
     }
 
     public Iterator<Item> iterator() {
         return new RandomizedQueueIterator<>();
     }
 
+    /**
+     * Returns an iterator over the items in uniformly random order that shuffles lazily, with
+     * a Fisher-Yates shuffle over positions whose swaps are kept in a sparse map: returning the
+     * k-th item draws one position and records one swap. The queue must not be modified while
+     * the iterator is in use.
+     *
+     * @return an iterator over the items in random order
+     */
+    public Iterator<Item> lazyIterator() {
+        return new LazyIterator();
+    }
+
+    private class LazyIterator implements Iterator<Item> {
+        private final int expectedModCount = modCount;
+        private final int size = n;
+        private final SparsePermutation swaps = new SparsePermutation();
+        private int i;
+
+        public boolean hasNext() {
+            return i < size;
+        }
+
+        public Item next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            // swap position i with a random position of [i, size), seen through earlier swaps
+            int j = StdRandom.uniformInt(i, size);
+            int picked = swaps.get(j);
+            swaps.put(j, swaps.get(i));
+            i++;
+            return get(picked);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Positions of a permutation that differ from the identity, in an open-addressing hash map
+    private static final class SparsePermutation {
+        private int[] keys = new int[16];       // position + 1, 0 for an empty slot
+        private int[] values = new int[16];
+        private int size;
+
+        // the value at position p, p itself if it was never swapped
+        int get(int p) {
+            int mask = keys.length - 1;
+            for (int slot = mix(p) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == p + 1) return values[slot];
+            }
+            return p;
+        }
+
+        void put(int p, int value) {
+            if (2 * (size + 1) > keys.length) {
+                rehash();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(p) & mask;
+            while (keys[slot] != 0 && keys[slot] != p + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = p + 1;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[2 * oldKeys.length];
+            values = new int[2 * oldValues.length];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != 0) put(oldKeys[slot] - 1, oldValues[slot]);
+            }
+        }
+
+        private static int mix(int p) {
+            int h = p * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
     private class RandomizedQueueIterator<Item> implements Iterator<Item> {
         private int i = n;
         private Item[] shuffledItems;
 
         public RandomizedQueueIterator() {
             shuffledItems = (Item[]) new Object[n];
-            System.arraycopy(items, 0, shuffledItems, 0, n);
+            for (int from = 0; from < n; from += SEGMENT) {
+                System.arraycopy(segments[from >>> SHIFT], 0, shuffledItems, from, Math.min(SEGMENT, n - from));
+            }
             StdRandom.shuffle(shuffledItems);
         }
 
@@ -0,0 +1,144 @@
+package zaarour.dev.w2_queues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Keeps a uniform random sample of k items from a stream of unknown length, in O(k) memory,
+ * with Li's Algorithm L.
+ * <p>
+ * Rather than drawing a random number for every item as Algorithm R does, Algorithm L draws
+ * how many items will be rejected before the next one enters the sample. The gaps grow
+ * geometrically, so after n items only O(k log(n / k)) items have been looked at and random
+ * numbers drawn. {@link #skippable()} exposes the current gap, so a reader can pass over the
+ * rejected items without even building them; see {@link TokenReader#skip(long)}.
+ * </p>
+ *
+ * @param <Item> the type of the items
+ */
+public class ReservoirSampler<Item> {
+
+    private final Item[] reservoir;
+    private final SplittableRandom random;
+    private int size;           // items in the reservoir, k once full
+    private long seen;          // items offered or skipped so far
+    private long next;          // number of the next item that enters the full reservoir
+    private double w;           // Algorithm L's running maximum of the item keys
+
+    // sample k items with a randomly seeded generator
+    public ReservoirSampler(int k) {
+        this(k, new SplittableRandom());
+    }
+
+    /**
+     * Creates a sampler of k items drawing from the given generator.
+     *
+     * @param k      the size of the sample
+     * @param random the generator
+     * @throws IllegalArgumentException if k is negative or random is null
+     */
+    @SuppressWarnings("unchecked")
+    public ReservoirSampler(int k, SplittableRandom random) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k should not be negative");
+        }
+        if (random == null) {
+            throw new IllegalArgumentException("random cannot be null");
+        }
+        this.reservoir = (Item[]) new Object[k];
+        this.random = random;
+    }
+
+    /**
+     * Offers the next item of the stream.
+     *
+     * @param item the item
+     * @throws IllegalArgumentException if item is null
+     */
+    public void add(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Null item");
+        }
+        seen++;
+        if (size < reservoir.length) {
+            reservoir[size++] = item;
+            if (size == reservoir.length) {
+                w = Math.exp(Math.log(uniform()) / reservoir.length);
+                advance();
+            }
+        }
+        else if (seen == next) {
+            reservoir[random.nextInt(reservoir.length)] = item;
+            w *= Math.exp(Math.log(uniform()) / reservoir.length);
+            advance();
+        }
+    }
+
+    /**
+     * Returns how many of the next items are certain to be rejected: 0 while the reservoir is
+     * filling, then the gap to the next item that enters it. For k = 0 every item is rejected.
+     *
+     * @return the number of next items that may be skipped
+     */
+    public long skippable() {
+        if (reservoir.length == 0) return Long.MAX_VALUE;
+        if (size < reservoir.length) return 0;
+        return next - seen - 1;
+    }
+
+    /**
+     * Counts the next items of the stream as seen without offering them.
+     *
+     * @param count the number of items passed over
+     * @throws IllegalArgumentException if count is negative or more than {@link #skippable()}
+     */
+    public void skip(long count) {
+        if (count < 0 || count > skippable()) {
+            throw new IllegalArgumentException("Cannot skip " + count + " items");
+        }
+        seen += count;
+    }
+
+    /**
+     * Returns the number of items of the stream so far, offered or skipped.
+     *
+     * @return the length of the stream so far
+     */
+    public long seen() {
+        return seen;
+    }
+
+    /**
+     * Returns the sample in uniformly random order: all items seen if there were at most k,
+     * otherwise a uniform random subset of k of them.
+     *
+     * @return a new list holding the sample
+     */
+    public List<Item> sample() {
+        Item[] shuffled = Arrays.copyOf(reservoir, size);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Item swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        return new ArrayList<>(Arrays.asList(shuffled));
+    }
+
+    // draw the gap to the next item that enters the reservoir
+    private void advance() {
+        double gap = Math.floor(Math.log(uniform()) / Math.log1p(-w));
+        next = seen + 1 + (gap >= Long.MAX_VALUE - seen - 1 ? Long.MAX_VALUE - seen - 1 : (long) gap);
+    }
+
+    // uniform in (0, 1), so that its logarithm is finite
+    private double uniform() {
+        double u;
+        do {
+            u = random.nextDouble();
+        } while (u == 0.0);
+        return u;
+    }
+}
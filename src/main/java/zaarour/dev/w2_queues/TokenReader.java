@@ -0,0 +1,178 @@
+package zaarour.dev.w2_queues;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits UTF-8 text into whitespace-separated tokens, reading bytes in bulk from a channel
+ * or from a buffer already in memory.
+ * <p>
+ * Tokens are found by scanning bytes, without decoding: in UTF-8 no byte of a multi-byte
+ * character can be an ASCII whitespace byte, so the split is the same as on the decoded text.
+ * Only the tokens actually returned by {@link #next()} are decoded into strings, and
+ * {@link #skip(long)} passes over tokens without creating anything. Whitespace is the ASCII
+ * control characters and space, bytes 0 to 32; unlike {@code StdIn}, other Unicode spaces
+ * stay inside tokens.
+ * </p>
+ */
+final class TokenReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;     // null when reading a fixed buffer
+    private final ByteBuffer buffer;
+    private byte[] token = new byte[64];            // bytes of a token split across two reads
+    private boolean eof;
+
+    /**
+     * Reads tokens from a channel through a 64 KiB buffer. The channel is not closed.
+     *
+     * @param channel the channel to read from
+     * @throws IllegalArgumentException if channel is null
+     */
+    TokenReader(ReadableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel cannot be null");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads tokens from the remaining bytes of a buffer, such as a mapped region of a file.
+     *
+     * @param bytes the bytes to read; its position advances as tokens are read
+     * @throws IllegalArgumentException if bytes is null
+     */
+    TokenReader(ByteBuffer bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null");
+        }
+        this.channel = null;
+        this.buffer = bytes;
+        this.eof = true;
+    }
+
+    /**
+     * Returns the next token.
+     *
+     * @return the next token, or null at the end of the input
+     * @throws UncheckedIOException if the channel cannot be read
+     */
+    String next() {
+        if (!skipWhitespace()) {
+            return null;
+        }
+        int length = 0;
+        while (true) {
+            int start = buffer.position();
+            int end = tokenEnd(start);
+            int count = end - start;
+            if (end < buffer.limit() || eof) {
+                if (length == 0 && buffer.hasArray()) {
+                    // the whole token is in the buffer: decode it in place
+                    buffer.position(end);
+                    return new String(buffer.array(), buffer.arrayOffset() + start, count, StandardCharsets.UTF_8);
+                }
+                length = append(length, start, count);
+                buffer.position(end);
+                return new String(token, 0, length, StandardCharsets.UTF_8);
+            }
+            // the token runs past the buffer: keep its head and read more
+            length = append(length, start, count);
+            buffer.position(end);
+            if (!refill()) {
+                return new String(token, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Passes over up to {@code count} tokens.
+     *
+     * @param count the number of tokens to skip
+     * @return the number of tokens skipped, less than count only at the end of the input
+     * @throws UncheckedIOException if the channel cannot be read
+     */
+    long skip(long count) {
+        long skipped = 0;
+        while (skipped < count && skipWhitespace()) {
+            while (true) {
+                int end = tokenEnd(buffer.position());
+                buffer.position(end);
+                if (end < buffer.limit() || !refill()) break;
+            }
+            skipped++;
+        }
+        return skipped;
+    }
+
+    // move to the next token byte; false at the end of the input
+    private boolean skipWhitespace() {
+        while (true) {
+            int i = buffer.position();
+            int limit = buffer.limit();
+            while (i < limit && buffer.get(i) <= ' ' && buffer.get(i) >= 0) {
+                i++;
+            }
+            buffer.position(i);
+            if (i < limit) {
+                return true;
+            }
+            if (!refill()) {
+                return false;
+            }
+        }
+    }
+
+    // position of the first whitespace byte at or after start, or the limit
+    private int tokenEnd(int start) {
+        int i = start;
+        int limit = buffer.limit();
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b <= ' ' && b >= 0) break;
+            i++;
+        }
+        return i;
+    }
+
+    private int append(int length, int start, int count) {
+        if (length + count > token.length) {
+            token = Arrays.copyOf(token, Math.max(2 * token.length, length + count));
+        }
+        for (int i = 0; i < count; i++) {
+            token[length + i] = buffer.get(start + i);
+        }
+        return length + count;
+    }
+
+    // read more bytes into an exhausted buffer; false at the end of the input
+    private boolean refill() {
+        if (eof) {
+            return false;
+        }
+        buffer.clear();
+        try {
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            if (read < 0) {
+                eof = true;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            buffer.flip();
+        }
+        return buffer.hasRemaining();
+    }
+}
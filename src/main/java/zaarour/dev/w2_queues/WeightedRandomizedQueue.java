@@ -0,0 +1,244 @@
+package zaarour.dev.w2_queues;
+
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A randomized queue whose items are chosen with probability proportional to their weight.
+ * <p>
+ * Every item lives in a slot that does not move until the item is dequeued, and
+ * {@link #enqueue(Object, double)} returns a handle for {@link #reweight(long, double)}: the slot
+ * in the low 32 bits and, in the high 32 bits, the generation of the slot, which is bumped every
+ * time an item leaves it. A handle whose item was dequeued is rejected even after its slot has
+ * been reused. Slot weights are summed in a Fenwick tree, so enqueue, reweight, sample and dequeue all take
+ * O(log n): sampling draws a uniform value below the total weight and descends the tree to the
+ * slot whose prefix sum covers it. Freed slots are reused by later enqueues.
+ * </p>
+ * <p>
+ * Sums updated incrementally pick up rounding errors, so the tree is rebuilt from the weights
+ * in O(n) once the number of updates reaches its capacity, which keeps the cost amortized.
+ * When the weights stop changing, {@link #snapshot()} builds an {@link AliasSampler} that
+ * samples in O(1).
+ * </p>
+ *
+ * @param <Item> the type of elements in the queue
+ */
+public class WeightedRandomizedQueue<Item> {
+
+    private Item[] items;       // items[s] = item in slot s, or null if the slot is free
+    private double[] weights;   // weights[s] = weight of slot s, 0 if the slot is free
+    private int[] generations;  // generations[s] = number of items dequeued from slot s
+    private double[] tree;      // Fenwick tree over weights, 1-based
+    private int[] free;         // stack of freed slots below used
+    private int freeCount;
+    private int used;           // slots [0, used) have held an item
+    private int n;
+    private int updates;        // tree updates since the last rebuild
+
+    // construct an empty weighted randomized queue
+    public WeightedRandomizedQueue() {
+        allocate(8);
+    }
+
+    /**
+     * Adds an item with the given weight.
+     *
+     * @param item   the item to add
+     * @param weight the weight of the item
+     * @return the handle of the item, valid until it is dequeued
+     * @throws IllegalArgumentException if item is null, or weight is not positive and finite
+     */
+    public long enqueue(Item item, double weight) {
+        if (item == null) {
+            throw new IllegalArgumentException("Cannot enqueue null item");
+        }
+        validateWeight(weight);
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        }
+        else {
+            if (used == items.length) {
+                allocate(2 * items.length);
+            }
+            slot = used++;
+        }
+        items[slot] = item;
+        weights[slot] = weight;
+        update(slot, weight);
+        n++;
+        return (long) generations[slot] << 32 | slot;
+    }
+
+    /**
+     * Changes the weight of the item with the given handle.
+     *
+     * @param handle the handle returned when the item was enqueued
+     * @param weight the new weight of the item
+     * @throws IllegalArgumentException if no item has that handle, or weight is not positive
+     *                                  and finite
+     */
+    public void reweight(long handle, double weight) {
+        int slot = slot(handle);
+        validateWeight(weight);
+        double delta = weight - weights[slot];
+        weights[slot] = weight;
+        update(slot, delta);
+    }
+
+    /**
+     * Returns the weight of the item with the given handle.
+     *
+     * @param handle the handle returned when the item was enqueued
+     * @return the weight of the item
+     * @throws IllegalArgumentException if no item has that handle
+     */
+    public double weight(long handle) {
+        return weights[slot(handle)];
+    }
+
+    // return the number of items on the queue
+    public int size() {
+        return n;
+    }
+
+    // is the queue empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // return a random item, chosen with probability proportional to its weight
+    public Item sample() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("WeightedRandomizedQueue is empty");
+        }
+        return items[pick()];
+    }
+
+    // remove and return a random item, chosen with probability proportional to its weight
+    public Item dequeue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("WeightedRandomizedQueue is empty");
+        }
+        int slot = pick();
+        Item item = items[slot];
+        double weight = weights[slot];
+        items[slot] = null;     // avoid loitering
+        weights[slot] = 0.0;
+        generations[slot]++;    // invalidate the handle of the item
+        update(slot, -weight);
+        free[freeCount++] = slot;
+        n--;
+        return item;
+    }
+
+    /**
+     * Returns an O(1) sampler over the current items and weights. Later changes to this queue
+     * do not affect it.
+     *
+     * @return an alias sampler over the items of this queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public AliasSampler<Item> snapshot() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("WeightedRandomizedQueue is empty");
+        }
+        Item[] present = (Item[]) new Object[n];
+        double[] presentWeights = new double[n];
+        int k = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (items[slot] != null) {
+                present[k] = items[slot];
+                presentWeights[k] = weights[slot];
+                k++;
+            }
+        }
+        return new AliasSampler<>(present, presentWeights);
+    }
+
+    // The occupied slot whose weight interval contains a uniform draw below the total weight;
+    // draws again in the rare case rounding lands on a free slot or past the last one
+    private int pick() {
+        int capacity = items.length;
+        while (true) {
+            double remaining = StdRandom.uniformDouble() * total();
+            int position = 0;
+            for (int step = Integer.highestOneBit(capacity); step > 0; step >>>= 1) {
+                int next = position + step;
+                if (next <= capacity && tree[next] <= remaining) {
+                    position = next;
+                    remaining -= tree[next];
+                }
+            }
+            if (position < used && items[position] != null) {
+                return position;
+            }
+        }
+    }
+
+    private double total() {
+        double sum = 0.0;
+        for (int i = items.length; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    // add delta to the sums covering slot, whose weight must already be updated
+    private void update(int slot, double delta) {
+        if (++updates > items.length) {
+            rebuild();
+            return;
+        }
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // recompute every sum from the weights, in O(capacity)
+    private void rebuild() {
+        Arrays.fill(tree, 0.0);
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        updates = 0;
+    }
+
+    // grow to the given power-of-two capacity
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalStateException("Queue too large");
+        }
+        items = items == null ? (Item[]) new Object[capacity] : Arrays.copyOf(items, capacity);
+        weights = weights == null ? new double[capacity] : Arrays.copyOf(weights, capacity);
+        generations = generations == null ? new int[capacity] : Arrays.copyOf(generations, capacity);
+        free = free == null ? new int[capacity] : Arrays.copyOf(free, capacity);
+        tree = new double[capacity + 1];
+        rebuild();
+    }
+
+    // the slot of a handle whose item is still in the queue
+    private int slot(long handle) {
+        int slot = (int) handle;
+        if (slot < 0 || slot >= used || items[slot] == null || generations[slot] != (int) (handle >>> 32)) {
+            throw new IllegalArgumentException("Invalid handle: " + handle);
+        }
+        return slot;
+    }
+
+    private static void validateWeight(double weight) {
+        if (!(weight > 0.0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be positive and finite: " + weight);
+        }
+    }
+
+    public static void main(String[] args){}
+}
@@ -0,0 +1,159 @@
+package zaarour.dev.w2_queues;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A lock-free work-stealing deque after Chase and Lev, for one owner thread and any number of
+ * thief threads.
+ * <p>
+ * The owner adds and removes items at the back with {@link #addLast(Object)} and
+ * {@link #removeLast()}, as it would on a stack; any thread, the owner included, may take the
+ * item at the front with {@link #removeFirst()}. The owner's operations do not contend with
+ * each other, and the owner and the thieves only meet through a compare-and-set on the front
+ * index when they race for the last item, so the deque scales where a {@link Deque} wrapped in
+ * {@code synchronized} serializes every call. A thread pool gives every worker its own deque:
+ * a worker runs its own tasks last-in first-out and, when it has none, steals the oldest task
+ * of another worker.
+ * </p>
+ * <p>
+ * Because only the owner may add, there is no {@code addFirst}, and the owner methods must
+ * never be called from another thread; this is not checked. Removals return {@code null}
+ * instead of throwing when the deque is empty, since emptiness can change at any time under
+ * concurrent use.
+ * </p>
+ * <p>
+ * Items live in a circular array whose length is a power of two. The owner replaces it with
+ * one twice as long when it is full; thieves that still hold the old array read the same
+ * items from it, and a thief only keeps an item after winning the compare-and-set on the
+ * front index, so a stale read is never returned.
+ * </p>
+ *
+ * @param <Item> the type of elements in the deque
+ */
+public class WorkStealingDeque<Item> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle TOP;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(WorkStealingDeque.class, "top", long.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long top;          // index of the front item; only ever incremented
+    private volatile long bottom;       // index after the back item; written by the owner only
+    private volatile Object[] items;    // items[i & (length - 1)] holds the item with index i
+
+    // construct an empty deque
+    public WorkStealingDeque() {
+        items = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * Adds the item to the back. Owner thread only.
+     *
+     * @param item the item to add
+     * @throws IllegalArgumentException if item is null
+     */
+    public void addLast(Item item) {
+        if (item == null)
+            throw new IllegalArgumentException("Null item");
+        long b = bottom;
+        long t = top;
+        Object[] a = items;
+        if (b - t >= a.length) {
+            a = grow(a, t, b);
+        }
+        SLOT.setRelease(a, (int) b & (a.length - 1), item);
+        bottom = b + 1;     // publishes the item to thieves
+    }
+
+    /**
+     * Removes and returns the item at the back. Owner thread only.
+     *
+     * @return the item at the back, or null if the deque is empty
+     */
+    @SuppressWarnings("unchecked")
+    public Item removeLast() {
+        long b = bottom - 1;
+        Object[] a = items;
+        bottom = b;
+        // the volatile write of bottom and the read of top must not be reordered: either the
+        // thieves see the smaller bottom, or the owner sees their larger top
+        VarHandle.fullFence();
+        long t = top;
+        if (t > b) {
+            bottom = b + 1;     // was empty
+            return null;
+        }
+        int slot = (int) b & (a.length - 1);
+        Item item = (Item) SLOT.getAcquire(a, slot);
+        if (t == b) {
+            // last item: race the thieves for it
+            if (!TOP.compareAndSet(this, t, t + 1)) {
+                item = null;
+            }
+            bottom = b + 1;
+        }
+        SLOT.setRelease(a, slot, null);     // avoid loitering
+        return item;
+    }
+
+    /**
+     * Removes and returns the item at the front. Any thread.
+     *
+     * @return the item at the front, or null if the deque is empty
+     */
+    @SuppressWarnings("unchecked")
+    public Item removeFirst() {
+        while (true) {
+            long t = top;
+            VarHandle.fullFence();
+            long b = bottom;
+            if (t >= b) {
+                return null;
+            }
+            Object[] a = items;
+            Item item = (Item) SLOT.getAcquire(a, (int) t & (a.length - 1));
+            if (item != null && TOP.compareAndSet(this, t, t + 1)) {
+                return item;
+            }
+            // lost the race to another thief or to the owner: some thread made progress
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the number of items on the deque. Under concurrent use this is only a snapshot
+     * that may be out of date as soon as it is returned.
+     *
+     * @return the number of items
+     */
+    public int size() {
+        long size = bottom - top;
+        return size <= 0 ? 0 : (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    // is the deque empty? a snapshot, like size()
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // copy items [t, b) to an array twice as long; the old array keeps its contents for thieves
+    private Object[] grow(Object[] a, long t, long b) {
+        if (a.length << 1 < 0)
+            throw new IllegalStateException("Deque too large");
+        Object[] bigger = new Object[a.length << 1];
+        for (long i = t; i < b; i++) {
+            bigger[(int) i & (bigger.length - 1)] = SLOT.getAcquire(a, (int) i & (a.length - 1));
+        }
+        items = bigger;
+        return bigger;
+    }
+}
@@ -1,3 +1,5 @@
+package zaarour.dev.w4_8puzzle;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -1,3 +1,5 @@
+package zaarour.dev.w4_8puzzle;
+
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.MinPQ;
 import edu.princeton.cs.algs4.Stack;
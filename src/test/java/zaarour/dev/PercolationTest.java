@@ -1,12 +1,33 @@
 package zaarour.dev;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import zaarour.dev.w1_percolation.BondPercolation;
+import zaarour.dev.w1_percolation.Lattice;
+import zaarour.dev.w1_percolation.NewmanZiff;
 import zaarour.dev.w1_percolation.Percolation;
+import zaarour.dev.w1_percolation.PercolationReplay;
+import zaarour.dev.w1_percolation.PercolationStats;
+import zaarour.dev.w1_percolation.ProgressListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class PercolationTest {
 
+    @Test
+    void testConstructorWithInvalidOrder() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> new Percolation(0)),
+                () -> assertThrows(IllegalArgumentException.class, () -> new Percolation(Percolation.MAX_ORDER + 1))
+        );
+    }
+
     @Test
     void testOpenWithInvalidArguments() {
         Percolation percolation = new Percolation(10);
@@ -55,6 +76,28 @@ public class PercolationTest {
         );
     }
 
+    @Test
+    void testFlatIndexMethodsWithInvalidArguments() {
+        Percolation percolation = new Percolation(10);
+
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.open(-1)),
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.open(100)),
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.isOpenIndex(-1)),
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.isOpenIndex(100))
+        );
+    }
+
+    @Test
+    public void testFlatIndexMatchesRowCol() {
+        Percolation percolation = new Percolation(4);
+        percolation.open(6);
+
+        assertTrue(percolation.isOpen(2, 3));
+        assertTrue(percolation.isOpenIndex(6));
+        assertFalse(percolation.isOpenIndex(7));
+    }
+
     @Test
     public void testPercolates() {
         Percolation percolation = new Percolation(5);
@@ -71,4 +114,260 @@ public class PercolationTest {
         assertTrue(percolation.isFull(4, 1));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testNoBackwash() {
+        Percolation percolation = new Percolation(3);
+        percolation.open(1, 1);
+        percolation.open(2, 1);
+        percolation.open(3, 1);
+        percolation.open(3, 3);
+
+        assertTrue(percolation.percolates());
+        assertTrue(percolation.isFull(3, 1));
+        assertFalse(percolation.isFull(3, 3));
+
+        Percolation single = new Percolation(1);
+        assertFalse(single.percolates());
+        single.open(1, 1);
+        assertTrue(single.percolates());
+    }
+
+    @Test
+    public void testOpenUntilPercolatesStopsAtPercolatingSite() {
+        Percolation percolation = new Percolation(3);
+        int[] sequence = {0, 8, 3, 4, 6, 1, 2};
+
+        percolation.openAll(sequence, 0, 2);
+        assertEquals(2, percolation.numberOfOpenSites());
+        assertEquals(3, percolation.openUntilPercolates(sequence, 2, sequence.length));
+        assertTrue(percolation.percolates());
+        assertEquals(5, percolation.numberOfOpenSites());
+        assertEquals(0, percolation.openUntilPercolates(sequence, 5, sequence.length));
+
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.openAll(null, 0, 0)),
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.openAll(sequence, 3, 2)),
+                () -> assertThrows(IllegalArgumentException.class, () -> percolation.openAll(new int[]{9}, 0, 1))
+        );
+    }
+
+    @Test
+    public void testCloseRebuildsConnectivity() {
+        Percolation percolation = new Percolation(3);
+        for (int row = 1; row <= 3; row++) {
+            percolation.open(row, 2);
+        }
+        assertTrue(percolation.percolates());
+
+        percolation.close(2, 2);
+        assertEquals(2, percolation.numberOfOpenSites());
+        assertFalse(percolation.percolates());
+        assertFalse(percolation.isFull(3, 2));
+
+        percolation.open(2, 1);
+        percolation.open(2, 2);
+        assertTrue(percolation.percolates());
+        assertTrue(percolation.isFull(2, 1));
+    }
+
+    @Test
+    public void testClusterStatistics() {
+        Percolation percolation = new Percolation(Lattice.square(3), true);
+        percolation.openAll(new int[]{0, 1, 8}, 0, 3);
+        assertEquals(2, percolation.numberOfClusters());
+        assertEquals(2, percolation.largestClusterSize());
+        assertEquals(0, percolation.spanningClusterSize());
+        assertArrayEquals(new int[]{0, 1, 1}, percolation.clusterSizeDistribution());
+
+        percolation.openAll(new int[]{4, 7}, 0, 2);
+        assertEquals(1, percolation.numberOfClusters());
+        assertEquals(5, percolation.spanningClusterSize());
+        assertEquals(1, percolation.clustersOfSize(5));
+
+        percolation.close(4);
+        assertEquals(2, percolation.numberOfClusters());
+        assertEquals(0, percolation.spanningClusterSize());
+        assertArrayEquals(new int[]{0, 0, 2}, percolation.clusterSizeDistribution());
+        assertThrows(UnsupportedOperationException.class, () -> new Percolation(3).clustersOfSize(1));
+    }
+
+    @Test
+    public void testReplayMatchesOnlinePercolation() {
+        int n = 5;
+        Random random = new Random(11);
+        int[] events = new int[400];
+        for (int t = 0; t < events.length; t++) {
+            int site = random.nextInt(n * n);
+            events[t] = random.nextInt(3) == 0
+                    ? PercolationReplay.closeEvent(site)
+                    : PercolationReplay.openEvent(site);
+        }
+
+        boolean[] replayed = PercolationReplay.replay(n, events);
+
+        Percolation percolation = new Percolation(n);
+        for (int t = 0; t < events.length; t++) {
+            if (events[t] >= 0) percolation.open(events[t]);
+            else percolation.close(~events[t]);
+            assertEquals(percolation.percolates(), replayed[t], "after event " + t);
+        }
+        assertThrows(IllegalArgumentException.class, () -> PercolationReplay.replay(n, new int[]{n * n}));
+    }
+
+    @Test
+    public void testLatticeTopologies() {
+        Percolation square = new Percolation(Lattice.square(3, false));
+        Percolation moore = new Percolation(Lattice.squareWithDiagonals(3, false));
+        for (int index : new int[]{0, 4, 8}) {
+            square.open(index);
+            moore.open(index);
+        }
+        assertFalse(square.percolates());
+        assertTrue(moore.percolates());
+
+        Percolation bounded = new Percolation(Lattice.square(3, false));
+        Percolation periodic = new Percolation(Lattice.square(3, true));
+        int[] wrapping = {2, 5, 3, 6};
+        bounded.openAll(wrapping, 0, wrapping.length);
+        periodic.openAll(wrapping, 0, wrapping.length);
+        assertFalse(bounded.percolates());
+        assertTrue(periodic.percolates());
+
+        Percolation cubic = new Percolation(Lattice.cubic(3, false));
+        cubic.openAll(new int[]{4, 13, 22}, 0, 3);
+        assertTrue(cubic.percolates());
+        assertTrue(cubic.isFullIndex(22));
+        assertThrows(UnsupportedOperationException.class, () -> cubic.open(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Lattice.cubic(2000, false));
+    }
+
+    @Test
+    public void testBondPercolation() {
+        Lattice lattice = Lattice.square(2);
+        int[] bonds = BondPercolation.bonds(lattice);
+        assertArrayEquals(new int[]{0, 1, 3, 4}, bonds);
+
+        BondPercolation percolation = new BondPercolation(lattice);
+        percolation.open(0);
+        assertFalse(percolation.percolates());
+        assertTrue(percolation.isFull(1));
+        percolation.open(3);
+        assertTrue(percolation.percolates());
+        assertEquals(2, percolation.numberOfOpenBonds());
+        assertThrows(IllegalArgumentException.class, () -> percolation.open(2));
+
+        PercolationStats stats = new PercolationStats.Builder(Lattice.square(16), 20)
+                .bond(true)
+                .seed(3L)
+                .listener(ProgressListener.QUIET)
+                .run();
+        assertTrue(stats.mean() > 0.3 && stats.mean() < 0.7);
+    }
+
+    @Test
+    public void testNewmanZiffCurves() {
+        NewmanZiff sequential = new NewmanZiff(Lattice.square(8), 200, 1, 5L);
+        NewmanZiff parallel = new NewmanZiff(Lattice.square(8), 200, 3, 5L);
+
+        assertEquals(0.0, sequential.percolationProbability(0.0));
+        assertEquals(1.0, sequential.percolationProbability(1.0));
+        assertEquals(1.0, sequential.largestClusterFraction(1.0));
+        assertTrue(sequential.percolationProbability(0.4) < sequential.percolationProbability(0.6));
+        assertTrue(sequential.percolationProbability(0.6) < sequential.percolationProbability(0.8));
+        assertEquals(sequential.percolationProbability(0.59), parallel.percolationProbability(0.59));
+        assertEquals(sequential.largestClusterFraction(0.59), parallel.largestClusterFraction(0.59));
+        assertThrows(IllegalArgumentException.class, () -> sequential.percolationProbability(1.5));
+    }
+
+    @Test
+    public void testParallelStatsMatchSequential() {
+        PercolationStats sequential = new PercolationStats(20, 16, 1, 42L);
+        PercolationStats parallel = new PercolationStats(20, 16, 4, 42L);
+
+        assertEquals(sequential.mean(), parallel.mean());
+        assertEquals(sequential.stddev(), parallel.stddev());
+        assertThrows(IllegalArgumentException.class, () -> new PercolationStats(20, 16, 0, 42L));
+    }
+
+    @Test
+    public void testStatsStopEarlyOnceConfidenceIntervalIsNarrow() {
+        int[] reported = new int[1];
+        PercolationStats stats = new PercolationStats.Builder(10, 100_000)
+                .epsilon(0.05)
+                .parallelism(2)
+                .seed(7L)
+                .listener((trial, maxTrials, threshold, mean, halfWidth) -> reported[0] = trial)
+                .run();
+
+        assertTrue(stats.trials() < 100_000);
+        assertEquals(stats.trials(), reported[0]);
+        assertTrue(stats.confidenceHi() - stats.confidenceLo() < 0.05);
+        assertThrows(IllegalArgumentException.class, () -> new PercolationStats(10, 10, -1.0, 1, 7L));
+        assertThrows(IllegalArgumentException.class, () -> new PercolationStats.Builder(10, 10).listener(null));
+    }
+
+    @Test
+    public void testQuietStatsMatchReportedStats() {
+        PercolationStats quiet = new PercolationStats.Builder(20, 16)
+                .seed(42L)
+                .listener(ProgressListener.QUIET)
+                .run();
+        PercolationStats reported = new PercolationStats(20, 16, 1, 42L);
+
+        assertEquals(reported.mean(), quiet.mean());
+    }
+
+
+    @Test
+    public void testCheckpointResumesWithIdenticalStatistics(@TempDir Path dir) throws IOException {
+        PercolationStats uninterrupted = new PercolationStats.Builder(12, 40)
+                .parallelism(3)
+                .seed(9L)
+                .listener(ProgressListener.QUIET)
+                .run();
+
+        Path file = dir.resolve("stats.ckpt");
+        new PercolationStats.Builder(12, 25)
+                .parallelism(3)
+                .seed(9L)
+                .listener(ProgressListener.QUIET)
+                .checkpoint(file)
+                .run();
+        // a record torn by a crash in the middle of a write
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        PercolationStats resumed = new PercolationStats.Builder(12, 40)
+                .parallelism(2)
+                .listener(ProgressListener.QUIET)
+                .checkpoint(file)
+                .run();
+        assertEquals(40, resumed.trials());
+        assertEquals(uninterrupted.mean(), resumed.mean());
+        assertEquals(uninterrupted.stddev(), resumed.stddev());
+
+        // a shorter or less precise run reads the stored trials without dropping any
+        long size = Files.size(file);
+        PercolationStats peek = new PercolationStats.Builder(12, 5)
+                .listener(ProgressListener.QUIET)
+                .checkpoint(file)
+                .run();
+        assertEquals(5, peek.trials());
+        new PercolationStats.Builder(12, 40)
+                .epsilon(0.5)
+                .listener(ProgressListener.QUIET)
+                .checkpoint(file)
+                .run();
+        assertEquals(size, Files.size(file));
+
+        assertThrows(IllegalArgumentException.class, () -> new PercolationStats.Builder(12, 40)
+                .seed(10L)
+                .listener(ProgressListener.QUIET)
+                .checkpoint(file)
+                .run());
+        assertThrows(IllegalArgumentException.class, () -> new PercolationStats.Builder(12, 40)
+                .bond(true)
+                .listener(ProgressListener.QUIET)
+                .checkpoint(file)
+                .run());
+    }
+}
@@ -1,11 +1,37 @@
 package zaarour.dev;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import zaarour.dev.w2_queues.AliasSampler;
+import zaarour.dev.w2_queues.CircularDeque;
+import zaarour.dev.w2_queues.ConcurrentRandomizedQueue;
 import zaarour.dev.w2_queues.Deque;
+import zaarour.dev.w2_queues.IntDeque;
+import zaarour.dev.w2_queues.LongDeque;
+import zaarour.dev.w2_queues.ParallelFileSampler;
 import zaarour.dev.w2_queues.RandomizedQueue;
+import zaarour.dev.w2_queues.ReservoirSampler;
+import zaarour.dev.w2_queues.WeightedRandomizedQueue;
+import zaarour.dev.w2_queues.WorkStealingDeque;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -62,6 +88,238 @@ public class QueueTest {
 
     }
 
+    @Test
+    public void testDequeBulkOperationsAndStreams() {
+        Deque<Integer> deque = new Deque<>();
+        deque.addAllLast(List.of(3, 4));
+        deque.addAllFirst(List.of(1, 2));
+        deque.addAllLast(List.of());
+        assertEquals(List.of(1, 2, 3, 4), deque.stream().collect(Collectors.toList()));
+        assertThrows(IllegalArgumentException.class, () -> deque.addAllLast(Arrays.asList(5, null)));
+        assertThrows(IllegalArgumentException.class, () -> deque.addAllFirst(Arrays.asList(0, null)));
+        assertEquals(List.of(1, 2, 3, 4), deque.stream().collect(Collectors.toList()));
+        assertEquals(4, deque.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, deque.drainTo(drained::add, 3));
+        assertEquals(List.of(1, 2, 3), drained);
+        assertEquals(1, deque.drainTo(drained::add, 10));
+        assertTrue(deque.isEmpty());
+
+        List<Integer> large = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        deque.addAllLast(large);
+        assertEquals(100_000, deque.spliterator().getExactSizeIfKnown());
+        assertEquals(large, deque.stream().parallel().collect(Collectors.toList()));
+        assertEquals(100_000L * 99_999 / 2, deque.stream().parallel().mapToLong(Integer::longValue).sum());
+    }
+
+    @Test
+    public void testCircularDequeMatchesArrayDeque() {
+        CircularDeque<Integer> deque = new CircularDeque<>();
+        ArrayDeque<Integer> expected = new ArrayDeque<>();
+        Random random = new Random(7);
+
+        // grow past several doublings, wrapping around at both ends, then drain to shrink
+        for (int step = 0; step < 5000; step++) {
+            int op = random.nextInt(step < 3000 ? 6 : 4);
+            if (op >= 4 || expected.isEmpty()) {
+                if (random.nextBoolean()) {
+                    deque.addFirst(step);
+                    expected.addFirst(step);
+                }
+                else {
+                    deque.addLast(step);
+                    expected.addLast(step);
+                }
+            }
+            else if (op < 2) {
+                assertEquals(expected.removeFirst(), deque.removeFirst());
+            }
+            else {
+                assertEquals(expected.removeLast(), deque.removeLast());
+            }
+            assertEquals(expected.size(), deque.size());
+        }
+
+        Iterator<Integer> iterator = deque.iterator();
+        for (Integer item : expected) {
+            assertEquals(item, iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+
+        while (!deque.isEmpty()) {
+            assertEquals(expected.removeLast(), deque.removeLast());
+        }
+        assertThrows(NoSuchElementException.class, deque::removeFirst);
+        assertThrows(IllegalArgumentException.class, () -> deque.addFirst(null));
+
+        deque.addLast(1);
+        Iterator<Integer> stale = deque.iterator();
+        deque.addLast(2);
+        assertThrows(ConcurrentModificationException.class, stale::next);
+    }
+
+    @Test
+    public void testPrimitiveDeques() {
+        // sliding-window maximum: the deque holds indices of decreasing values
+        int[] values = {1, 3, -1, -3, 5, 3, 6, 7};
+        int window = 3;
+        IntDeque indices = new IntDeque();
+        int[] maxima = new int[values.length - window + 1];
+        for (int i = 0; i < values.length; i++) {
+            while (!indices.isEmpty() && values[indices.peekLast()] <= values[i]) indices.removeLast();
+            indices.addLast(i);
+            if (indices.peekFirst() <= i - window) indices.removeFirst();
+            if (i >= window - 1) maxima[i - window + 1] = values[indices.peekFirst()];
+        }
+        assertArrayEquals(new int[]{3, 3, 5, 5, 6, 7}, maxima);
+
+        IntDeque deque = new IntDeque();
+        for (int i = 0; i < 100; i++) {
+            deque.addFirst(-i);
+            deque.addLast(i);
+        }
+        assertEquals(200, deque.size());
+        assertEquals(0, deque.stream().sum());
+        PrimitiveIterator.OfInt iterator = deque.iterator();
+        assertEquals(-99, iterator.nextInt());
+        deque.clear();
+        assertThrows(NoSuchElementException.class, deque::removeLast);
+
+        LongDeque longs = new LongDeque();
+        longs.addLast(Long.MAX_VALUE);
+        longs.addFirst(Long.MIN_VALUE);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MAX_VALUE}, longs.stream().toArray());
+        assertEquals(Long.MAX_VALUE, longs.removeLast());
+        assertEquals(Long.MIN_VALUE, longs.removeFirst());
+        assertTrue(longs.isEmpty());
+    }
+
+    @Test
+    public void testWorkStealingDequeTakesEveryItemExactlyOnce() throws InterruptedException {
+        int items = 200_000;
+        int thieves = 3;
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(items);
+        AtomicBoolean ownerDone = new AtomicBoolean();
+
+        Thread[] threads = new Thread[thieves];
+        for (int k = 0; k < thieves; k++) {
+            threads[k] = new Thread(() -> {
+                while (!ownerDone.get() || !deque.isEmpty()) {
+                    Integer item = deque.removeFirst();
+                    if (item != null) taken.incrementAndGet(item);
+                }
+            });
+            threads[k].start();
+        }
+
+        // the owner pushes everything, popping from its own end every third push
+        Random random = new Random(3);
+        for (int i = 0; i < items; i++) {
+            deque.addLast(i);
+            if (random.nextInt(3) == 0) {
+                Integer item = deque.removeLast();
+                if (item != null) taken.incrementAndGet(item);
+            }
+        }
+        ownerDone.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(deque.isEmpty());
+        assertNull(deque.removeLast());
+        assertNull(deque.removeFirst());
+        for (int i = 0; i < items; i++) {
+            assertEquals(1, taken.get(i), "item " + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> deque.addLast(null));
+    }
+
+    @Test
+    public void testRandomizedQueueLazyIterator() {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<>();
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(i);
+        }
+
+        // every item exactly once per pass, and each item first about equally often
+        int[] firstCounts = new int[5];
+        for (int pass = 0; pass < 5000; pass++) {
+            boolean[] seen = new boolean[5];
+            Iterator<Integer> iterator = queue.lazyIterator();
+            int first = iterator.next();
+            firstCounts[first]++;
+            seen[first] = true;
+            int count = 1;
+            while (iterator.hasNext()) {
+                int item = iterator.next();
+                assertFalse(seen[item]);
+                seen[item] = true;
+                count++;
+            }
+            assertEquals(5, count);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(Math.abs(firstCounts[i] - 1000) < 150, "item " + i + " first " + firstCounts[i] + " times");
+        }
+
+        Iterator<Integer> stale = queue.lazyIterator();
+        queue.dequeue();
+        assertThrows(ConcurrentModificationException.class, stale::next);
+    }
+
+    @Test
+    public void testRandomizedQueueCapacity() {
+        RandomizedQueue<Integer> queue = new RandomizedQueue<>(100);
+        assertEquals(100, queue.capacity());
+        queue.ensureCapacity(50);
+        assertEquals(100, queue.capacity());
+
+        // grow past several segments, then every item comes out exactly once
+        int n = 5000;
+        for (int i = 0; i < n; i++) {
+            queue.enqueue(i);
+        }
+        assertTrue(queue.capacity() >= n && queue.capacity() < n + 1024);
+        int sum = 0;
+        for (int item : queue) sum += item;
+        assertEquals(n * (n - 1) / 2, sum);
+        boolean[] seen = new boolean[n];
+        Iterator<Integer> lazy = queue.lazyIterator();
+        for (int i = 0; i < 10; i++) {
+            int item = lazy.next();
+            assertFalse(seen[item]);
+            seen[item] = true;
+        }
+        Arrays.fill(seen, false);
+        while (queue.size() > 10) {
+            int item = queue.dequeue();
+            assertFalse(seen[item]);
+            seen[item] = true;
+        }
+        assertEquals(100, queue.capacity());     // shrinks no further than the hint
+        queue.trimToSize();
+        assertEquals(10, queue.capacity());
+
+        // with shrinking off, only trimToSize releases capacity
+        RandomizedQueue<Integer> kept = new RandomizedQueue<>(0, 0);
+        kept.ensureCapacity(3000);
+        assertEquals(3072, kept.capacity());
+        for (int i = 0; i < 3000; i++) kept.enqueue(i);
+        while (kept.size() > 1) kept.dequeue();
+        assertEquals(3072, kept.capacity());
+        kept.trimToSize();
+        assertEquals(1, kept.capacity());
+        kept.dequeue();
+        kept.enqueue(7);
+        assertEquals(7, kept.sample());
+
+        assertThrows(IllegalArgumentException.class, () -> new RandomizedQueue<Integer>(-1));
+        assertThrows(IllegalArgumentException.class, () -> new RandomizedQueue<Integer>(8, 2));
+    }
+
     @Test
     public void testRandomizedQueue() {
         // Test enqueue and size
@@ -108,4 +366,171 @@ public class QueueTest {
 
     }
 
+    @Test
+    public void testWeightedRandomizedQueue() {
+        WeightedRandomizedQueue<String> queue = new WeightedRandomizedQueue<>();
+        long a = queue.enqueue("a", 1.0);
+        long b = queue.enqueue("b", 2.0);
+        long c = queue.enqueue("c", 7.0);
+
+        int draws = 20_000;
+        int sampledC = 0;
+        for (int i = 0; i < draws; i++) {
+            if (queue.sample().equals("c")) sampledC++;
+        }
+        assertEquals(0.7, (double) sampledC / draws, 0.02);
+
+        // after reweighting, c is as likely as a and b together
+        queue.reweight(c, 3.0);
+        assertEquals(3.0, queue.weight(c));
+        int aliasA = 0;
+        AliasSampler<String> sampler = queue.snapshot();
+        queue.reweight(a, 100.0);   // does not affect the snapshot
+        for (int i = 0; i < draws; i++) {
+            if (sampler.sample().equals("a")) aliasA++;
+        }
+        assertEquals(1.0 / 6, (double) aliasA / draws, 0.02);
+
+        int firstA = 0;
+        for (int i = 0; i < 2000; i++) {
+            WeightedRandomizedQueue<String> copy = new WeightedRandomizedQueue<>();
+            copy.enqueue("a", 9.0);
+            copy.enqueue("b", 1.0);
+            if (copy.dequeue().equals("a")) firstA++;
+            assertEquals(1, copy.size());
+        }
+        assertEquals(0.9, firstA / 2000.0, 0.03);
+
+        for (int i = 0; i < 3; i++) queue.dequeue();
+        assertTrue(queue.isEmpty());
+        assertThrows(NoSuchElementException.class, queue::dequeue);
+        assertThrows(IllegalArgumentException.class, () -> queue.reweight(b, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> queue.enqueue("d", 0.0));
+        assertThrows(IllegalArgumentException.class, () -> queue.enqueue("d", Double.NaN));
+
+        // a stale handle stays invalid once its slot holds another item
+        WeightedRandomizedQueue<String> reused = new WeightedRandomizedQueue<>();
+        long stale = reused.enqueue("old", 1.0);
+        reused.dequeue();
+        long fresh = reused.enqueue("new", 2.0);
+        assertEquals((int) stale, (int) fresh);
+        assertThrows(IllegalArgumentException.class, () -> reused.reweight(stale, 5.0));
+        assertThrows(IllegalArgumentException.class, () -> reused.weight(stale));
+        assertEquals(2.0, reused.weight(fresh));
+    }
+
+    @Test
+    public void testConcurrentRandomizedQueue() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        int total = producers * perProducer;
+        ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<>(4);
+        AtomicIntegerArray taken = new AtomicIntegerArray(total);
+        AtomicInteger remaining = new AtomicInteger(total);
+
+        Thread[] threads = new Thread[2 * producers];
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) queue.enqueue(base + i);
+            });
+            threads[producers + p] = new Thread(() -> {
+                while (remaining.get() > 0) {
+                    Integer item = queue.poll();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                        remaining.decrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertThrows(NoSuchElementException.class, queue::dequeue);
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, taken.get(i), "item " + i);
+        }
+
+        // single-threaded, the first item out is uniform across stripes
+        int[] counts = new int[10];
+        for (int run = 0; run < 10_000; run++) {
+            ConcurrentRandomizedQueue<Integer> small = new ConcurrentRandomizedQueue<>(4);
+            for (int i = 0; i < 10; i++) small.enqueue(i);
+            counts[small.dequeue()]++;
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1000, counts[i], 150, "item " + i);
+        }
+    }
+
+    @Test
+    public void testReservoirSamplerIsUniformWithSkips() {
+        int n = 50;
+        int k = 5;
+        int runs = 20_000;
+        int[] counts = new int[n];
+        SplittableRandom root = new SplittableRandom(17);
+        for (int run = 0; run < runs; run++) {
+            ReservoirSampler<Integer> sampler = new ReservoirSampler<>(k, root.split());
+            int item = 0;
+            while (item < n) {
+                long skip = Math.min(sampler.skippable(), n - item);
+                sampler.skip(skip);
+                item += (int) skip;
+                if (item < n) sampler.add(item++);
+            }
+            assertEquals(n, sampler.seen());
+            List<Integer> sample = sampler.sample();
+            assertEquals(k, sample.size());
+            for (int picked : sample) counts[picked]++;
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals(runs * k / n, counts[i], 150, "item " + i);
+        }
+
+        ReservoirSampler<String> small = new ReservoirSampler<>(3);
+        small.add("a");
+        small.add("b");
+        assertEquals(0, small.skippable());
+        assertEquals(2, small.sample().size());
+        assertThrows(IllegalArgumentException.class, () -> small.skip(1));
+    }
+
+    @Test
+    public void testParallelFileSamplerIsUniformAcrossChunks(@TempDir Path dir) throws IOException {
+        // tokens of different lengths and separators, so chunk ends fall inside tokens
+        int n = 20;
+        StringBuilder text = new StringBuilder(" ");
+        for (int i = 0; i < n; i++) {
+            text.append("t".repeat(i % 4)).append(i).append(i % 3 == 0 ? "\n" : " \t ");
+        }
+        Path file = dir.resolve("tokens.txt");
+        Files.writeString(file, text);
+
+        List<String> expected = IntStream.range(0, n).mapToObj(i -> "t".repeat(i % 4) + i).sorted().toList();
+        for (long chunkBytes = 1; chunkBytes <= 16; chunkBytes++) {
+            List<String> all = new ArrayList<>(ParallelFileSampler.sample(file, n + 5, 4, chunkBytes, new SplittableRandom(chunkBytes)));
+            all.sort(null);
+            assertEquals(expected, all, "chunks of " + chunkBytes + " bytes");
+        }
+
+        int k = 4;
+        int runs = 2_000;
+        int[] counts = new int[n];
+        SplittableRandom root = new SplittableRandom(23);
+        for (int run = 0; run < runs; run++) {
+            List<String> sample = ParallelFileSampler.sample(file, k, 2, 9, root.split());
+            assertEquals(k, sample.size());
+            assertEquals(k, sample.stream().distinct().count());
+            for (String token : sample) counts[Integer.parseInt(token.replace("t", ""))]++;
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals(runs * k / n, counts[i], 90, "token " + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ParallelFileSampler.sample(file, 1, 0, new SplittableRandom()));
+    }
+
 }